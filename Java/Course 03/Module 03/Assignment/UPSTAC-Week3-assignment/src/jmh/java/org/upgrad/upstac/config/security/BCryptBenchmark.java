@@ -0,0 +1,38 @@
+package org.upgrad.upstac.config.security;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One password check at the cost the application uses (the encoder bean's default strength).
+ * Bounds how many logins per second each core of the login pool can take.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BCryptBenchmark {
+
+    private BCryptPasswordEncoder encoder;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        encoder = new PasswordEncoderConfig().encoder();
+        hash = encoder.encode("password");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches("password", hash);
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode("password");
+    }
+}
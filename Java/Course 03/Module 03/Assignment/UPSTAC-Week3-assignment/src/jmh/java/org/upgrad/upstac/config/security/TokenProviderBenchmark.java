@@ -0,0 +1,68 @@
+package org.upgrad.upstac.config.security;
+
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.UserFixtures;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The token work done on every authenticated request, and once per login.
+ * parseToken is the full signature check every call pays without the verified-token cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenProviderBenchmark {
+
+    private TokenProvider tokenProvider;
+    private User user;
+    private Authentication authentication;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        tokenProvider = new TokenProvider(10000, 300);
+        ReflectionTestUtils.setField(tokenProvider, "secretKey", "UpgradCovid@%^%@^!@$!@$@#$#$#6763276327");
+
+        user = UserFixtures.userWithRoles("user", "USER");
+        authentication = new UsernamePasswordAuthenticationToken(user.getUserName(), null, UpgradUserDetailsService.getAuthority(user));
+        userDetails = new org.springframework.security.core.userdetails.User(user.getUserName(), "", UpgradUserDetailsService.getAuthority(user));
+        token = tokenProvider.generateToken(authentication, user);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return tokenProvider.generateToken(authentication, user);
+    }
+
+    @Benchmark
+    public String parseToken() {
+        return tokenProvider.getClaimFromToken(token, Claims::getSubject);
+    }
+
+    @Benchmark
+    public String getUsernameFromToken() {
+        return tokenProvider.getUsernameFromToken(token);
+    }
+
+    @Benchmark
+    public UserDetails validateToken() throws Exception {
+        tokenProvider.validateToken(token, userDetails);
+        return userDetails;
+    }
+
+    @Benchmark
+    public UsernamePasswordAuthenticationToken getAuthentication() {
+        return tokenProvider.getAuthentication(token, null, userDetails);
+    }
+}
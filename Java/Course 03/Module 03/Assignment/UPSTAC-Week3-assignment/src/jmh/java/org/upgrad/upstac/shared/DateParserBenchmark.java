@@ -0,0 +1,40 @@
+package org.upgrad.upstac.shared;
+
+import org.openjdk.jmh.annotations.*;
+import org.upgrad.upstac.exception.AppException;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date conversions done for every registration and test request, including the rejected-input path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateParserBenchmark {
+
+    private final LocalDate date = LocalDate.of(1990, 6, 15);
+
+    @Benchmark
+    public LocalDate getDateFromString() {
+        return DateParser.getDateFromString("1990-06-15");
+    }
+
+    @Benchmark
+    public String getStringFromDate() {
+        return DateParser.getStringFromDate(date);
+    }
+
+    @Benchmark
+    public Object getDateFromInvalidString() {
+        try {
+            return DateParser.getDateFromString("15/06/1990");
+        } catch (AppException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.upgrad.upstac.users;
+
+import org.upgrad.upstac.users.models.AccountStatus;
+import org.upgrad.upstac.users.roles.Role;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class UserFixtures {
+
+    public static User userWithRoles(String userName, String... roleNames) {
+
+        Set<Role> roles = new HashSet<>();
+        for (String roleName : roleNames) {
+            Role role = new Role();
+            role.setName(roleName);
+            roles.add(role);
+        }
+
+        User user = new User();
+        user.setId(1L);
+        user.setUserName(userName);
+        user.setStatus(AccountStatus.APPROVED);
+        user.setRoles(roles);
+        return user;
+    }
+}
@@ -0,0 +1,42 @@
+package org.upgrad.upstac.users;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.upgrad.upstac.config.security.UpgradUserDetailsService;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Role checks made by services on most requests, and the authorities built whenever a user is loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserRolesBenchmark {
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        user = UserFixtures.userWithRoles("doctor", "USER", "DOCTOR");
+    }
+
+    @Benchmark
+    public boolean doesUserHasRole() {
+        return user.doesUserHasRole("DOCTOR");
+    }
+
+    @Benchmark
+    public boolean doesUserHasMissingRole() {
+        return user.doesUserHasRole("GOVERNMENT_AUTHORITY");
+    }
+
+    @Benchmark
+    public Set<SimpleGrantedAuthority> getAuthority() {
+        return UpgradUserDetailsService.getAuthority(user);
+    }
+}
@@ -3,81 +3,105 @@ package org.upgrad.upstac.auth;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.upgrad.upstac.auth.login.LoginAttemptThrottle;
+import org.upgrad.upstac.auth.login.LoginService;
 import org.upgrad.upstac.auth.models.LoginRequest;
 import org.upgrad.upstac.auth.models.LoginResponse;
+import org.upgrad.upstac.auth.revocation.TokenRevocationService;
 import org.upgrad.upstac.config.security.TokenProvider;
 import org.upgrad.upstac.exception.AppException;
-import org.upgrad.upstac.users.UserService;
+import org.upgrad.upstac.users.User;
 
-import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.upgrad.upstac.config.security.UpgradUserDetailsService.getAuthority;
 
 @RestController
 public class AuthController {
 
 
-    private AuthenticationManager authenticationManager;
+    private LoginService loginService;
+
+    private LoginAttemptThrottle loginAttemptThrottle;
 
     private TokenProvider tokenProvider;
 
-    private UserService userService;
+    private TokenRevocationService tokenRevocationService;
 
 
     private static final Logger log = LoggerFactory.getLogger(AuthController.class);
 
 
     @Autowired
-    public AuthController(AuthenticationManager authenticationManager, TokenProvider tokenProvider, UserService userService) {
-        this.authenticationManager = authenticationManager;
+    public AuthController(LoginService loginService, LoginAttemptThrottle loginAttemptThrottle, TokenProvider tokenProvider, TokenRevocationService tokenRevocationService) {
+        this.loginService = loginService;
+        this.loginAttemptThrottle = loginAttemptThrottle;
         this.tokenProvider = tokenProvider;
-        this.userService = userService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
+    // The password check runs on the login pool; the request thread is released until it completes
     @PostMapping("/auth/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest) throws AuthenticationException {
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody LoginRequest loginRequest, HttpServletRequest request) {
 
-        try {
+        if (loginAttemptThrottle.tryAcquire(loginRequest.getUserName(), request.getRemoteAddr()) == false)
+            return CompletableFuture.completedFuture(refuse(HttpStatus.TOO_MANY_REQUESTS, loginAttemptThrottle.retryAfterSeconds(), "Too many login attempts"));
 
-            final Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            loginRequest.getUserName(),
-                            loginRequest.getPassword()
-                    )
-            );
+        try {
 
+            // Read before the password check, so a revocation landing between the check and the token still covers it
+            long revocationEpoch = tokenRevocationService.currentEpoch();
 
-            if(userService.isApprovedUser( loginRequest.getUserName()) == false){
-                throw new AppException("User Not Approved");
-            }
+            return loginService.authenticate(loginRequest.getUserName(), loginRequest.getPassword())
+                    .<ResponseEntity<?>>thenApply(user -> ResponseEntity.ok(loginResponseFor(user, revocationEpoch)))
+                    .exceptionally(this::toForbidden);
 
+        } catch (RejectedExecutionException e) {
+            log.info("Login queue full, turning away " + loginRequest.getUserName());
+            return CompletableFuture.completedFuture(refuse(HttpStatus.SERVICE_UNAVAILABLE, 1, "Too many logins in progress"));
+        }
 
+    }
 
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-            final String token = tokenProvider.generateToken(authentication);
-            LoginResponse result = new LoginResponse(loginRequest.getUserName(), "Success", token);
+    private LoginResponse loginResponseFor(User user, long revocationEpoch) {
 
-            return ResponseEntity.ok(result);
+        Authentication authentication = new UsernamePasswordAuthenticationToken(user.getUserName(), null, getAuthority(user));
+        final String token = tokenProvider.generateToken(authentication, user, revocationEpoch);
+        return new LoginResponse(user.getUserName(), "Success", token);
+    }
 
+    private ResponseEntity<?> toForbidden(Throwable throwable) {
 
-        } catch (AppException e) {
+        Throwable e = (throwable instanceof CompletionException && null != throwable.getCause()) ? throwable.getCause() : throwable;
 
+        if (e instanceof AppException)
             throw new ResponseStatusException(
                     HttpStatus.FORBIDDEN, e.getMessage(), e);
-        }catch (AuthenticationException e) {
-            e.printStackTrace();
+
+        if (e instanceof AuthenticationException) {
             log.info("AuthenticationException" + e.getMessage());
             throw new ResponseStatusException(
                     HttpStatus.FORBIDDEN, "Bad credentials", e);
         }
 
+        throw new CompletionException(e);
+    }
+
+    private static ResponseEntity<?> refuse(HttpStatus status, long retryAfterSeconds, String message) {
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .body(message);
     }
 
 
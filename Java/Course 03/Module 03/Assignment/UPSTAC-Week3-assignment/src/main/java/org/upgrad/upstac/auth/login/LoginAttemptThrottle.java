@@ -0,0 +1,74 @@
+package org.upgrad.upstac.auth.login;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Caps login attempts per user name and per client address in fixed windows.
+ *
+ * Keys are hashed onto a fixed number of striped counters instead of one counter each, so memory stays
+ * constant however many names a flood tries. Keys sharing a stripe share its count, which can only
+ * make the limit trip early, and with this many stripes that needs far more logins than a shift change brings.
+ */
+@Component
+public class LoginAttemptThrottle {
+
+    static final int STRIPES = 1 << 16;
+
+    private final AtomicLongArray userAttempts = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray addressAttempts = new AtomicLongArray(STRIPES);
+
+    @Value("${upstac.login.max-attempts-per-user:10}")
+    private int maxAttemptsPerUser;
+
+    @Value("${upstac.login.max-attempts-per-address:300}")
+    private int maxAttemptsPerAddress;
+
+    @Value("${upstac.login.window-seconds:60}")
+    private int windowSeconds;
+
+    public boolean tryAcquire(String userName, String address) {
+
+        long window = currentWindow();
+        boolean allowed = true;
+
+        if (null != address)
+            allowed = increment(addressAttempts, address, window) <= maxAttemptsPerAddress;
+
+        if (null != userName)
+            allowed &= increment(userAttempts, userName, window) <= maxAttemptsPerUser;
+
+        return allowed;
+    }
+
+    public long retryAfterSeconds() {
+        long windowMillis = windowSeconds * 1000L;
+        return (windowMillis - System.currentTimeMillis() % windowMillis + 999) / 1000;
+    }
+
+    private long currentWindow() {
+        return (System.currentTimeMillis() / (windowSeconds * 1000L)) & 0xFFFFFFFFL;
+    }
+
+    // Each slot packs the window number in its high 32 bits and the attempts seen in it in the low 32
+    static int increment(AtomicLongArray slots, String key, long window) {
+
+        int slot = spread(key.hashCode()) & (STRIPES - 1);
+        while (true) {
+            long current = slots.get(slot);
+            int count = ((current >>> 32) == window) ? (int) current : 0;
+            if (count == Integer.MAX_VALUE)
+                return count;
+
+            if (slots.compareAndSet(slot, current, (window << 32) | (count + 1)))
+                return count + 1;
+        }
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,85 @@
+package org.upgrad.upstac.auth.login;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.UserService;
+import org.upgrad.upstac.users.models.AccountStatus;
+
+import javax.annotation.PreDestroy;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks login passwords on a small pool sized to the CPUs, never on the request threads.
+ * BCrypt is deliberately slow; a burst of logins queues here, up to a limit past which
+ * new logins are turned away at once, and the rest of the API keeps its threads and CPU.
+ */
+@Service
+public class LoginService {
+
+    private final ThreadPoolExecutor passwordChecks;
+
+    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+
+    // Checked against when the user does not exist, so unknown names take as long as wrong passwords
+    private final String unknownUserHash;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    public LoginService(BCryptPasswordEncoder bCryptPasswordEncoder,
+                        @Value("${upstac.login.threads:0}") int threads,
+                        @Value("${upstac.login.queue-capacity:64}") int queueCapacity) {
+
+        this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.unknownUserHash = bCryptPasswordEncoder.encode(UUID.randomUUID().toString());
+
+        int poolSize = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.passwordChecks = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "login-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Completes with the approved user; throws RejectedExecutionException when the queue is full
+    public CompletableFuture<User> authenticate(String userName, String password) throws RejectedExecutionException {
+        return CompletableFuture.supplyAsync(() -> check(userName, password), passwordChecks);
+    }
+
+    // One user load serves both the password and the approval check
+    User check(String userName, String password) {
+
+        User user = (null == userName) ? null : userService.findByUserName(userName);
+        String hash = (null == user) ? unknownUserHash : user.getPassword();
+
+        boolean matches = null != password && bCryptPasswordEncoder.matches(password, hash);
+        if (null == user || matches == false)
+            throw new BadCredentialsException("Bad credentials");
+
+        if (user.getStatus() != AccountStatus.APPROVED)
+            throw new AppException("User Not Approved");
+
+        return user;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        passwordChecks.shutdownNow();
+    }
+}
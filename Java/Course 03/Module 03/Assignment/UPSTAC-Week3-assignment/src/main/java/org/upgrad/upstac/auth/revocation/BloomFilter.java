@@ -0,0 +1,55 @@
+package org.upgrad.upstac.auth.revocation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size bloom filter over strings. False positives only; nothing is ever removed,
+ * so callers replace the whole filter when entries go away.
+ */
+class BloomFilter {
+
+    private static final int HASHES = 4;
+
+    private final AtomicLongArray bits;
+    private final int mask;
+
+    // bitCount is rounded up to a power of two
+    BloomFilter(int bitCount) {
+        int size = Integer.highestOneBit(Math.max(64, bitCount - 1)) << 1;
+        this.bits = new AtomicLongArray(size >>> 6);
+        this.mask = size - 1;
+    }
+
+    void add(String value) {
+        int hash = value.hashCode();
+        int step = spread(hash);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (hash + i * step) & mask;
+            int word = bit >>> 6;
+            long flag = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & flag) != 0)
+                    break;
+            } while (!bits.compareAndSet(word, current, current | flag));
+        }
+    }
+
+    boolean mightContain(String value) {
+        int hash = value.hashCode();
+        int step = spread(hash);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (hash + i * step) & mask;
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    // Second hash for double hashing; odd, so the probes never repeat
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) | 1;
+    }
+}
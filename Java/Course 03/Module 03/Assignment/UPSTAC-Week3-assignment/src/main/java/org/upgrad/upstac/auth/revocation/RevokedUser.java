@@ -0,0 +1,27 @@
+package org.upgrad.upstac.auth.revocation;
+
+import lombok.Data;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Tokens of this user carrying a revocation epoch below this one are no longer accepted.
+ * Rows are purged once every token they cover has expired.
+ */
+@Entity
+@Data
+public class RevokedUser {
+
+    @Id
+    private String userName;
+
+    // Epoch millis
+    private Long revokedAt;
+
+    // The revocation epoch handed out for this revocation
+    @Column(nullable = false)
+    private Long epoch;
+
+}
@@ -0,0 +1,19 @@
+package org.upgrad.upstac.auth.revocation;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+
+public interface RevokedUserRepository extends JpaRepository<RevokedUser,String> {
+
+
+    @Transactional
+    @Modifying
+    @Query("delete from RevokedUser r where r.revokedAt < :before")
+    int purgeRevokedBefore(@Param("before") Long before);
+
+
+}
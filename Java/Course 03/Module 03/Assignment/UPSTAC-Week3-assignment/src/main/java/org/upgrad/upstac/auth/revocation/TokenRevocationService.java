@@ -0,0 +1,107 @@
+package org.upgrad.upstac.auth.revocation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.upgrad.upstac.config.security.TokenProvider;
+import org.upgrad.upstac.config.security.VerifiedToken;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Revokes every token a user holds, for closed or deleted accounts, password changes and lost approval.
+ *
+ * Tokens are ordered against revocations by an epoch rather than by their issue time, which JWT keeps
+ * in whole seconds only. Each token carries the epoch current when its login started; each revocation
+ * moves the epoch on and revokes the user's tokens from before it. The epoch is never below the clock
+ * in millis, so it keeps increasing across restarts even after old revocations are purged.
+ *
+ * Checked on every authenticated request: a bloom filter answers for almost all users without a map lookup,
+ * and only users revoked within the last token lifetime are kept, in memory and in the database.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final long TOKEN_LIFETIME_MILLIS = TokenProvider.JWT_TOKEN_VALIDITY * 1000;
+
+    // The epoch each user was last revoked at
+    private final Map<String, Long> revokedEpochs = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private volatile BloomFilter bloomFilter;
+
+    @Autowired
+    private RevokedUserRepository revokedUserRepository;
+
+    @Value("${upstac.revocations.bloom-bits:1048576}")
+    private int bloomBits;
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    // Loaded before the server takes requests, so a restart never accepts a revoked token
+    @PostConstruct
+    public void load() {
+        epoch.set(System.currentTimeMillis());
+        revokedUserRepository.findAll().forEach(revoked -> {
+            revokedEpochs.merge(revoked.getUserName(), revoked.getEpoch(), Math::max);
+            epoch.accumulateAndGet(revoked.getEpoch(), Math::max);
+        });
+        purgeExpired();
+        log.info("Loaded " + revokedEpochs.size() + " token revocations");
+    }
+
+    // Read when a login starts and put in its token
+    public long currentEpoch() {
+        return epoch.get();
+    }
+
+    // Tokens without an epoch (issued before it was added) come before every revocation
+    public boolean isRevoked(VerifiedToken token) {
+
+        if (!bloomFilter.mightContain(token.getUserName()))
+            return false;
+
+        Long revoked = revokedEpochs.get(token.getUserName());
+        return null != revoked && token.getRevocationEpoch() < revoked;
+    }
+
+    public void revokeAllFor(String userName) {
+
+        long now = System.currentTimeMillis();
+        long revokedEpoch = epoch.updateAndGet(current -> Math.max(current + 1, now));
+
+        RevokedUser revoked = new RevokedUser();
+        revoked.setUserName(userName);
+        revoked.setRevokedAt(now);
+        revoked.setEpoch(revokedEpoch);
+        revokedUserRepository.save(revoked);
+
+        synchronized (this) {
+            revokedEpochs.merge(userName, revokedEpoch, Math::max);
+            bloomFilter.add(userName);
+        }
+        log.info("Revoked tokens of " + userName);
+    }
+
+    // A revocation is dropped once every token it covers has expired on its own
+    @Scheduled(fixedDelayString = "${upstac.revocations.purge-ms:600000}")
+    public void purgeExpired() {
+
+        long cutoff = System.currentTimeMillis() - TOKEN_LIFETIME_MILLIS;
+        revokedUserRepository.purgeRevokedBefore(cutoff);
+
+        // Rebuilt under the lock, so a revocation made meanwhile is in the filter that replaces the old one
+        synchronized (this) {
+            // An epoch is at or just above the clock at its revocation, so it ages out like a timestamp
+            revokedEpochs.values().removeIf(revoked -> revoked < cutoff);
+            BloomFilter rebuilt = new BloomFilter(bloomBits);
+            revokedEpochs.keySet().forEach(rebuilt::add);
+            bloomFilter = rebuilt;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.upgrad.upstac.config.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.upgrad.upstac.shared.DateParser;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Dates in request and response bodies go through {@link DateParser}, so JSON accepts and writes
+ * exactly what the registration fields do.
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer localDateCodec() {
+        return builder -> builder
+                .serializerByType(LocalDate.class, new LocalDateSerializer())
+                .deserializerByType(LocalDate.class, new LocalDateDeserializer());
+    }
+
+    static class LocalDateSerializer extends JsonSerializer<LocalDate> {
+
+        @Override
+        public void serialize(LocalDate value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeString(DateParser.getStringFromDate(value));
+        }
+    }
+
+    static class LocalDateDeserializer extends JsonDeserializer<LocalDate> {
+
+        @Override
+        public LocalDate deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+
+            if (parser.hasToken(JsonToken.VALUE_STRING) == false)
+                return (LocalDate) context.handleUnexpectedToken(LocalDate.class, parser);
+
+            String text = parser.getText();
+            if (text.trim().isEmpty())
+                return null;
+
+            return DateParser.tryParse(text)
+                    .orElseThrow(() -> context.weirdStringException(text, LocalDate.class, "expected a date as yyyy-MM-dd"));
+        }
+    }
+}
@@ -7,6 +7,10 @@ import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 import org.upgrad.upstac.auth.register.RegisterRequest;
+import org.upgrad.upstac.testrequests.active.ActiveTestRequestRegistry;
+import org.upgrad.upstac.testrequests.queue.WorkQueueIndex;
+import org.upgrad.upstac.testrequests.stats.PositivityHotspots;
+import org.upgrad.upstac.testrequests.stats.TestRequestCounters;
 import org.upgrad.upstac.users.User;
 import org.upgrad.upstac.users.UserService;
 import org.upgrad.upstac.users.models.Gender;
@@ -29,6 +33,17 @@ public class AppInitializationService implements ApplicationListener<Application
     @Autowired
     UserService userService;
 
+    @Autowired
+    ActiveTestRequestRegistry activeTestRequestRegistry;
+
+    @Autowired
+    WorkQueueIndex workQueueIndex;
+
+    @Autowired
+    TestRequestCounters testRequestCounters;
+
+    @Autowired
+    PositivityHotspots positivityHotspots;
 
     User defaultDoctor = null;
     User defaultTester = null;
@@ -50,6 +65,12 @@ public class AppInitializationService implements ApplicationListener<Application
             log.info("loaded default values");
         }
 
+        roleService.loadRegistry();
+        activeTestRequestRegistry.rebuildIfEmpty();
+        workQueueIndex.rebuild();
+        testRequestCounters.reconcile();
+        positivityHotspots.rebuild();
+
 
     }
 
@@ -0,0 +1,69 @@
+package org.upgrad.upstac.config.loaddata;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.TableStructure;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Moves each table-backed id sequence past the ids already in its entity's table.
+ *
+ * Databases without sequences (MySQL) back each @SequenceGenerator with a *_seq table, which ddl-auto
+ * creates starting at 1. On a database whose rows got their ids from AUTO_INCREMENT, those ids are
+ * taken, so every insert would fail with a duplicate key. Runs as the context starts, after the schema
+ * update and before anything is inserted; a sequence already past the table's ids is left alone, so
+ * it is a no-op on every start after the first and safe for instances starting together.
+ */
+@Component
+public class IdSequenceUpgrade {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final Logger log = LoggerFactory.getLogger(IdSequenceUpgrade.class);
+
+    @PostConstruct
+    public void raiseSequences() {
+
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            IdentifierGenerator generator = persister.getIdentifierGenerator();
+
+            // Real sequences (H2) are only ever created fresh with their tables here
+            if (!(generator instanceof SequenceStyleGenerator) || !(persister instanceof AbstractEntityPersister))
+                continue;
+
+            DatabaseStructure sequence = ((SequenceStyleGenerator) generator).getDatabaseStructure();
+            if (sequence instanceof TableStructure)
+                raise(sequence, (AbstractEntityPersister) persister);
+        }
+    }
+
+    // The pooled optimizer hands out the incrementSize ids up to the value it reads, so next_val has to
+    // be a whole increment above the largest id in use
+    private void raise(DatabaseStructure sequence, AbstractEntityPersister persister) {
+
+        Long maxId = jdbcTemplate.queryForObject("select coalesce(max(" + persister.getIdentifierColumnNames()[0] + "), 0)"
+                + " from " + persister.getTableName(), Long.class);
+        long nextValue = maxId + sequence.getIncrementSize();
+
+        int raised = jdbcTemplate.update("update " + sequence.getName() + " set next_val = ? where next_val < ?", nextValue, nextValue);
+        if (raised > 0)
+            log.info("Raised " + sequence.getName() + " to " + nextValue + ", past the ids in " + persister.getTableName());
+    }
+}
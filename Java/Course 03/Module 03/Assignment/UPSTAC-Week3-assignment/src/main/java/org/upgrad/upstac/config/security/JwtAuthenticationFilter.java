@@ -1,14 +1,17 @@
 package org.upgrad.upstac.config.security;
 
+import io.jsonwebtoken.JwtException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.upgrad.upstac.auth.revocation.TokenRevocationService;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -31,21 +34,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private TokenProvider tokenProvider;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    // Build the principal from the token alone, without loading the user (tokens issued before uid/approved fall back)
+    @Value("${upstac.security.stateless-tokens:false}")
+    private boolean statelessTokens;
+
     @Override
     protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain) throws IOException, ServletException {
         String header = req.getHeader(HEADER_STRING);
 
-        String username = null;
-        String authToken = null;
-
-        if (isTokenAttributeSetIn(header)) {
-            authToken = getAuthTokenFromHeader(header);
-            username = getUserNameFromToken(authToken);
-        }
+        if (isTokenAttributeSetIn(header) && isSecurityContextAuthenticationNotPresent()) {
 
-        if (isSecurityContextAuthenticationNotPresent(username)){
-            log.info("security context se");
-            setSecurityContextAuthenticationIn(req, username, authToken);
+            VerifiedToken token = verify(getAuthTokenFromHeader(header));
+            if (null != token && tokenRevocationService.isRevoked(token) == false)
+                setSecurityContextAuthenticationIn(req, token);
         }
 
 
@@ -56,28 +60,38 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         return header.replace(TOKEN_PREFIX, "");
     }
 
-    String getUserNameFromToken(String authToken) throws ServletException {
-
-        return tokenProvider.getUsernameFromToken(authToken);
-
+    // Parsed once per request; an invalid or expired token leaves the request unauthenticated
+    VerifiedToken verify(String authToken) {
+        try {
+            return tokenProvider.verify(authToken);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.info("Rejected token: " + e.getMessage());
+            return null;
+        }
     }
 
     private boolean isTokenAttributeSetIn(String header) {
         return header != null && header.startsWith(TOKEN_PREFIX);
     }
 
-    void setSecurityContextAuthenticationIn(HttpServletRequest req, String username, String authToken) throws ServletException {
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+    void setSecurityContextAuthenticationIn(HttpServletRequest req, VerifiedToken token) throws ServletException {
+
+        UserDetails userDetails;
+        if (statelessTokens && token.isSelfContained()) {
+            userDetails = new UpstacUserDetails(token);
+        } else {
+            userDetails = userDetailsService.loadUserByUsername(token.getUserName());
+            tokenProvider.validateToken(token, userDetails);
+        }
 
-        tokenProvider.validateToken(authToken, userDetails);
-        UsernamePasswordAuthenticationToken authentication = tokenProvider.getAuthentication(authToken, SecurityContextHolder.getContext().getAuthentication(), userDetails);
+        UsernamePasswordAuthenticationToken authentication = tokenProvider.getAuthentication(token, userDetails);
         authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(req));
-        logger.info("authenticated user " + username + ", setting security context");
+        log.debug("authenticated user " + token.getUserName() + ", setting security context");
         SecurityContextHolder.getContext().setAuthentication(authentication);
 
     }
 
-    boolean isSecurityContextAuthenticationNotPresent(String username) {
-        return username != null && SecurityContextHolder.getContext().getAuthentication() == null;
+    boolean isSecurityContextAuthenticationNotPresent() {
+        return SecurityContextHolder.getContext().getAuthentication() == null;
     }
 }
\ No newline at end of file
@@ -1,8 +1,11 @@
 package org.upgrad.upstac.config.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.jsonwebtoken.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -10,12 +13,15 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.models.AccountStatus;
 
 import javax.servlet.ServletException;
 import java.io.Serializable;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -30,13 +36,46 @@ public class TokenProvider implements Serializable {
 
 
     static final String AUTHORITIES_KEY = "scopes";
+    static final String USER_ID_KEY = "uid";
+    static final String APPROVED_KEY = "approved";
+    static final String REVOCATION_EPOCH_KEY = "rev";
+
+    // Tokens seen recently, so a client polling with the same token is not HMAC-verified on every call
+    private final transient Cache<String, VerifiedToken> verifiedTokens;
+
+    @Autowired
+    public TokenProvider(@Value("${upstac.security.verified-token-cache-size:10000}") long cacheSize,
+                         @Value("${upstac.security.verified-token-ttl-seconds:300}") long ttlSeconds) {
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    // Checks the signature and expiry once and returns the claims; throws JwtException for a bad or expired token
+    public VerifiedToken verify(String token) {
+
+        long now = System.currentTimeMillis();
+        VerifiedToken verified = verifiedTokens.getIfPresent(token);
+        if (null == verified) {
+            verified = toVerifiedToken(getAllClaimsFromToken(token));
+            verifiedTokens.put(token, verified);
+        }
+
+        // A cached entry can outlive the token itself
+        if (verified.isExpired(now)) {
+            verifiedTokens.invalidate(token);
+            throw new ExpiredJwtException(null, null, "Token Expired");
+        }
+        return verified;
+    }
 
     public String getUsernameFromToken(String token) {
-        return getClaimFromToken(token, Claims::getSubject);
+        return verify(token).getUserName();
     }
 
     public Date getExpirationDateFromToken(String token) {
-        return getClaimFromToken(token, Claims::getExpiration);
+        return new Date(verify(token).getExpiresAt());
     }
 
     public <T> T getClaimFromToken(String token, Function<Claims, T> claimsResolver) {
@@ -51,20 +90,54 @@ public class TokenProvider implements Serializable {
                 .getBody();
     }
 
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
+    private VerifiedToken toVerifiedToken(Claims claims) {
+
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        Object scopes = claims.get(AUTHORITIES_KEY);
+        if (null != scopes)
+            for (String authority : scopes.toString().split(","))
+                if (authority.isEmpty() == false)
+                    authorities.add(new SimpleGrantedAuthority(authority));
+
+        // Numbers come back as Integer or Long depending on their size
+        Number userId = claims.get(USER_ID_KEY, Number.class);
+        Number revocationEpoch = claims.get(REVOCATION_EPOCH_KEY, Number.class);
+
+        return new VerifiedToken(claims.getSubject(),
+                (null == userId) ? null : userId.longValue(),
+                claims.get(APPROVED_KEY, Boolean.class),
+                authorities,
+                (null == claims.getIssuedAt()) ? 0L : claims.getIssuedAt().getTime(),
+                claims.getExpiration().getTime(),
+                (null == revocationEpoch) ? 0L : revocationEpoch.longValue());
     }
 
     public String generateToken(Authentication authentication) {
+        return generateToken(authentication, null);
+    }
+
+    public String generateToken(Authentication authentication, User user) {
+        return generateToken(authentication, user, 0L);
+    }
+
+    // With the user, the token also carries their id and approval so requests can be authenticated from it alone.
+    // revocationEpoch is TokenRevocationService's epoch from when the login started; 0 puts it before every revocation
+    public String generateToken(Authentication authentication, User user, long revocationEpoch) {
         final String authorities = authentication.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.joining(","));
 
         log.info("authorities",authorities);
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(authentication.getName())
                 .claim(AUTHORITIES_KEY, authorities)
+                .claim(REVOCATION_EPOCH_KEY, revocationEpoch);
+
+        if (null != user)
+            builder.claim(USER_ID_KEY, user.getId())
+                    .claim(APPROVED_KEY, user.getStatus() == AccountStatus.APPROVED);
+
+        return builder
                 .signWith(SignatureAlgorithm.HS256, secretKey)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + JWT_TOKEN_VALIDITY*1000))
@@ -72,32 +145,21 @@ public class TokenProvider implements Serializable {
     }
 
     public void validateToken(String token, UserDetails userDetails) throws ServletException {
-        final String username = getUsernameFromToken(token);
-        if (username.equals(userDetails.getUsername()) == false)
-            throw new ServletException("Invalid User Name");
-
-        if (!isTokenExpired(token) == false)
-            throw new ServletException("Token Expired");
+        validateToken(verify(token), userDetails);
+    }
 
+    void validateToken(VerifiedToken token, UserDetails userDetails) throws ServletException {
+        if (token.getUserName().equals(userDetails.getUsername()) == false)
+            throw new ServletException("Invalid User Name");
     }
 
     UsernamePasswordAuthenticationToken getAuthentication(final String token, final Authentication existingAuth, final UserDetails userDetails) {
+        return getAuthentication(verify(token), userDetails);
+    }
 
-        final JwtParser jwtParser = Jwts.parser().setSigningKey(secretKey);
-
-        final Jws<Claims> claimsJws = jwtParser.parseClaimsJws(token);
-
-        final Claims claims = claimsJws.getBody();
-
-
-
-        log.info("claims" + claims.get(AUTHORITIES_KEY).toString());
-        final Collection<? extends GrantedAuthority> authorities =
-                Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                        .map(SimpleGrantedAuthority::new)
-                        .collect(Collectors.toList());
-
-        return new UsernamePasswordAuthenticationToken(userDetails, "", authorities);
+    // Authorities come from the token, as they were granted at login
+    UsernamePasswordAuthenticationToken getAuthentication(final VerifiedToken token, final UserDetails userDetails) {
+        return new UsernamePasswordAuthenticationToken(userDetails, "", token.getAuthorities());
     }
 
     private static final Logger log = LoggerFactory.getLogger(TokenProvider.class);
@@ -10,9 +10,9 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.upgrad.upstac.users.User;
 import org.upgrad.upstac.users.UserService;
+import org.upgrad.upstac.users.roles.UserRole;
 
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
 
 
 @Service(value = "UpgradUserDetailsService")
@@ -33,20 +33,31 @@ public class UpgradUserDetailsService implements UserDetailsService {
 	@Override
 	public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
 		User user = userService.findByUserName(username);
-		log.info("loadUserByUsername " + user.toString());
 		if(user == null){
 			throw new UsernameNotFoundException("Invalid username or password.");
 		}
-		return new org.springframework.security.core.userdetails.User(user.getUserName(), user.getPassword(), getAuthority(user));
+		log.debug("loadUserByUsername " + user.getUserName());
+		return new UpstacUserDetails(user);
 	}
 
-	private Set<SimpleGrantedAuthority> getAuthority(User user) {
+	public static Set<SimpleGrantedAuthority> getAuthority(User user) {
 
-		return user.getRoles()
-				.stream()
-				.map(role -> new SimpleGrantedAuthority("ROLE_" + role.getName()))
-				.collect(Collectors.toSet());
+		return AUTHORITIES_BY_MASK.get(user.getRoleMask() & UserRole.ALL);
 
 	}
 
+	static final String ROLE_PREFIX = "ROLE_";
+
+	// Every combination of roles maps to one shared, immutable set of authorities
+	private static final List<Set<SimpleGrantedAuthority>> AUTHORITIES_BY_MASK = new ArrayList<>();
+
+	static {
+		for (int mask = 0; mask <= UserRole.ALL; mask++) {
+			Set<SimpleGrantedAuthority> authorities = new HashSet<>();
+			for (UserRole role : UserRole.valuesOf(mask))
+				authorities.add(new SimpleGrantedAuthority(ROLE_PREFIX + role.name()));
+			AUTHORITIES_BY_MASK.add(Collections.unmodifiableSet(authorities));
+		}
+	}
+
 }
@@ -0,0 +1,47 @@
+package org.upgrad.upstac.config.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.upgrad.upstac.users.roles.UserRole;
+
+import java.util.Collection;
+
+/**
+ * The authenticated principal, carrying the user's id and roles as UserRole bits so role checks
+ * on it need neither the user nor a scan of the authorities.
+ */
+@Getter
+public class UpstacUserDetails extends org.springframework.security.core.userdetails.User {
+
+    private final Long userId;
+    private final int roleMask;
+
+    // From a loaded user
+    public UpstacUserDetails(org.upgrad.upstac.users.User user) {
+        super(user.getUserName(), user.getPassword(), UpgradUserDetailsService.getAuthority(user));
+        this.userId = user.getId();
+        this.roleMask = user.getRoleMask();
+    }
+
+    // From a verified token alone, for the stateless mode of JwtAuthenticationFilter
+    public UpstacUserDetails(VerifiedToken token) {
+        super(token.getUserName(), "", token.getAuthorities());
+        this.userId = token.getUserId();
+        this.roleMask = token.getRoleMask();
+    }
+
+    public boolean hasRole(UserRole role) {
+        return role.isIn(roleMask);
+    }
+
+    public static int roleMaskOf(Collection<? extends GrantedAuthority> authorities) {
+        int mask = 0;
+        for (GrantedAuthority authority : authorities) {
+            String name = authority.getAuthority();
+            UserRole role = UserRole.fromName(name.startsWith(UpgradUserDetailsService.ROLE_PREFIX) ? name.substring(UpgradUserDetailsService.ROLE_PREFIX.length()) : name);
+            if (null != role)
+                mask |= role.bit();
+        }
+        return mask;
+    }
+}
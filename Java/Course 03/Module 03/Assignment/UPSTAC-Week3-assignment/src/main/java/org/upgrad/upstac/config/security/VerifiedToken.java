@@ -0,0 +1,45 @@
+package org.upgrad.upstac.config.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The claims of a token whose signature has been checked, parsed once and kept as plain values.
+ * userId and approved are only present in tokens issued with them; older tokens leave them null,
+ * and a revocation epoch of 0.
+ */
+@Getter
+public class VerifiedToken {
+
+    private final String userName;
+    private final Long userId;
+    private final Boolean approved;
+    private final List<GrantedAuthority> authorities;
+    private final int roleMask;
+    private final long issuedAt;
+    private final long expiresAt;
+    private final long revocationEpoch;
+
+    public VerifiedToken(String userName, Long userId, Boolean approved, List<GrantedAuthority> authorities, long issuedAt, long expiresAt, long revocationEpoch) {
+        this.userName = userName;
+        this.userId = userId;
+        this.approved = approved;
+        this.authorities = Collections.unmodifiableList(authorities);
+        this.roleMask = UpstacUserDetails.roleMaskOf(authorities);
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+        this.revocationEpoch = revocationEpoch;
+    }
+
+    public boolean isExpired(long now) {
+        return expiresAt <= now;
+    }
+
+    // Enough to authenticate without loading the user
+    public boolean isSelfContained() {
+        return null != userId && Boolean.TRUE.equals(approved);
+    }
+}
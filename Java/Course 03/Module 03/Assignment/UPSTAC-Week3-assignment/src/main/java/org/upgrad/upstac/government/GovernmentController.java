@@ -0,0 +1,76 @@
+package org.upgrad.upstac.government;
+
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.testrequests.stats.Hotspot;
+import org.upgrad.upstac.testrequests.stats.PositivityHotspots;
+import org.upgrad.upstac.testrequests.stats.StageTurnaround;
+import org.upgrad.upstac.testrequests.stats.TestRequestCounters;
+import org.upgrad.upstac.testrequests.stats.TestRequestStats;
+import org.upgrad.upstac.testrequests.stats.TurnaroundTimes;
+
+import java.util.List;
+
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
+
+
+@RestController
+@RequestMapping("/api/government")
+public class GovernmentController {
+
+    static final int MAX_HOTSPOTS = 100;
+
+
+    @Autowired
+    private TestRequestCounters testRequestCounters;
+
+    @Autowired
+    private TurnaroundTimes turnaroundTimes;
+
+    @Autowired
+    private PositivityHotspots positivityHotspots;
+
+
+    // Served from in-memory counters; see TestRequestCounters for how they are kept in line with the database
+    @GetMapping("/stats")
+    @PreAuthorize("hasAnyRole('GOVERNMENT_AUTHORITY')")
+    public TestRequestStats getStats() {
+
+        return testRequestCounters.snapshot();
+
+    }
+
+    // p50/p90/p99 of the time spent in each stage, per rolling window
+    @GetMapping("/turnaround")
+    @PreAuthorize("hasAnyRole('GOVERNMENT_AUTHORITY')")
+    public List<StageTurnaround> getTurnaround() {
+
+        return turnaroundTimes.snapshot();
+
+    }
+
+    // pinCodes with the highest positivity rate over the window, with its change from the window before
+    @GetMapping("/hotspots")
+    @PreAuthorize("hasAnyRole('GOVERNMENT_AUTHORITY')")
+    public List<Hotspot> getHotspots(@RequestParam(defaultValue = "24h") String window,
+                                     @RequestParam(defaultValue = "10") int top,
+                                     @RequestParam(defaultValue = "10") int minTests) {
+
+        if (top < 1 || top > MAX_HOTSPOTS)
+            throw asBadRequest("top should be between 1 and " + MAX_HOTSPOTS);
+
+        try {
+            return positivityHotspots.top(window, top, minTests);
+        } catch (AppException e) {
+            throw asBadRequest(e.getMessage());
+        }
+
+    }
+
+}
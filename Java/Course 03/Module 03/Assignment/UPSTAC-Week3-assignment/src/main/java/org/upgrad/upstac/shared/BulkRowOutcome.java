@@ -0,0 +1,30 @@
+package org.upgrad.upstac.shared;
+
+import lombok.Getter;
+
+/**
+ * Result of one row of a bulk upload, reported back to the caller line by line.
+ */
+@Getter
+public class BulkRowOutcome {
+
+    private final long line;
+    private final Long requestId;
+    private final boolean accepted;
+    private final String message;
+
+    private BulkRowOutcome(long line, Long requestId, boolean accepted, String message) {
+        this.line = line;
+        this.requestId = requestId;
+        this.accepted = accepted;
+        this.message = message;
+    }
+
+    public static BulkRowOutcome accepted(long line, Long requestId) {
+        return new BulkRowOutcome(line, requestId, true, null);
+    }
+
+    public static BulkRowOutcome rejected(long line, Long requestId, String message) {
+        return new BulkRowOutcome(line, requestId, false, message);
+    }
+}
@@ -2,38 +2,62 @@ package org.upgrad.upstac.shared;
 
 import org.upgrad.upstac.exception.AppException;
 
-import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
 import java.util.Date;
 import java.util.Optional;
 
 public class DateParser {
 
+    //"2018-09-09", also taking single digit months and days ("2018-9-9") as registrations always have
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("uuuu-M-d")
+            .withResolverStyle(ResolverStyle.STRICT);
+
 
     public static LocalDate getDateFromString(String input) {
 
-        try {
-            String pattern = "yyyy-MM-dd";
-            SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
-            return asLocalDate(simpleDateFormat.parse(input));
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new AppException("Invalid Date String" + input);
+        return tryParse(input)
+                .orElseThrow(() -> new AppException("Invalid Date String" + input));
+
+
+    }
 
+    // Empty for blank, malformed or impossible dates (2021-02-30); never throws
+    public static Optional<LocalDate> tryParse(String input) {
+
+        if (null == input)
+            return Optional.empty();
+
+        String text = input.trim();
+
+        // Fast path for the usual yyyy-MM-dd: read the digits directly
+        if (isIsoShaped(text)) {
+            try {
+                return Optional.of(LocalDate.of(digits(text, 0, 4), digits(text, 5, 7), digits(text, 8, 10)));
+            } catch (DateTimeException e) {
+                return Optional.empty();
+            }
         }
 
+        try {
+            return Optional.of(LocalDate.parse(text, FORMATTER));
+        } catch (DateTimeException e) {
+            return Optional.empty();
+        }
 
     }
 
     public static String getStringFromDate(LocalDate input) {
 
-        //"2018-09-09"
-        String pattern = "yyyy-MM-dd";
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
+        if (null == input)
+            throw new AppException("Invalid Input");
 
-        return simpleDateFormat.format(asDate(input));
+        // ISO yyyy-MM-dd, built without a formatter
+        return input.toString();
 
 
     }
@@ -53,5 +77,24 @@ public class DateParser {
 
     }
 
+    private static boolean isIsoShaped(String text) {
+
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-')
+            return false;
+
+        for (int i = 0; i < 10; i++)
+            if (i != 4 && i != 7 && (text.charAt(i) < '0' || text.charAt(i) > '9'))
+                return false;
+
+        return true;
+    }
+
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++)
+            value = value * 10 + (text.charAt(i) - '0');
+        return value;
+    }
+
 
 }
@@ -0,0 +1,36 @@
+package org.upgrad.upstac.shared;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset (cursor) paginated listing.
+ * Pass {@code nextCursor} back as the {@code after} parameter to fetch the following page;
+ * it is {@code null} once the listing is exhausted.
+ */
+@Getter
+public class KeysetPage<T> {
+
+    private final List<T> items;
+    private final Long nextCursor;
+
+    public KeysetPage(List<T> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Builds a page from rows fetched with a limit of {@code limit + 1}:
+     * the extra row only tells us whether there is a next page and is dropped.
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int limit, Function<T, Long> keyOf) {
+
+        if (rows.size() <= limit)
+            return new KeysetPage<>(rows, null);
+
+        List<T> items = rows.subList(0, limit);
+        return new KeysetPage<>(items, keyOf.apply(items.get(limit - 1)));
+    }
+}
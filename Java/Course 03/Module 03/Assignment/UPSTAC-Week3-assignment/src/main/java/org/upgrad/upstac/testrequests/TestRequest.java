@@ -1,21 +1,41 @@
 package org.upgrad.upstac.testrequests;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.Data;
+import lombok.ToString;
 import org.upgrad.upstac.testrequests.consultation.Consultation;
 import org.upgrad.upstac.testrequests.lab.LabResult;
 import org.upgrad.upstac.users.User;
 import org.upgrad.upstac.users.models.Gender;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.time.LocalDate;
 
 @Data
 @Entity
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@Table(indexes = @Index(name = "idx_test_request_status_id", columnList = "status,requestId"))
+// Everything a TestRequest serializes to, in one select; the users' roles follow in batches
+@NamedEntityGraph(name = TestRequest.WITH_RESULTS,
+        attributeNodes = {
+                @NamedAttributeNode("createdBy"),
+                @NamedAttributeNode(value = "labResult", subgraph = "labResult"),
+                @NamedAttributeNode(value = "consultation", subgraph = "consultation")
+        },
+        subgraphs = {
+                @NamedSubgraph(name = "labResult", attributeNodes = @NamedAttributeNode("tester")),
+                @NamedSubgraph(name = "consultation", attributeNodes = @NamedAttributeNode("doctor"))
+        })
 public class TestRequest {
 
+    public static final String WITH_RESULTS = "TestRequest.withResults";
+
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "test_request_seq")
+    @SequenceGenerator(name = "test_request_seq", sequenceName = "test_request_seq", allocationSize = 50)
     Long requestId;
 
     @ManyToOne
@@ -25,6 +45,18 @@ public class TestRequest {
 
     private RequestStatus status = RequestStatus.INITIATED;
 
+    // Bumped on every status change; the API hands it out as the request's ETag
+    private Long version = 0L;
+
+    // When the request entered its current status
+    private Instant statusSince = Instant.now();
+
+    // When it entered the status moveTo just took it out of; only known to the instance that made the move
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    private Instant previousStatusSince;
+
 
     private String name;
     private Gender gender;
@@ -40,4 +72,16 @@ public class TestRequest {
     @OneToOne(mappedBy="request")
     LabResult labResult;
 
+    public void moveTo(RequestStatus to) {
+        this.previousStatusSince = statusSince;
+        this.statusSince = Instant.now();
+        this.status = to;
+        this.version = currentVersion() + 1;
+    }
+
+    // Rows written before the column existed have no version yet
+    public long currentVersion() {
+        return (null == version) ? 0L : version;
+    }
+
 }
@@ -5,21 +5,38 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 import org.upgrad.upstac.config.security.UserLoggedInService;
 import org.upgrad.upstac.exception.AppException;
-import org.upgrad.upstac.testrequests.flow.TestRequestFlow;
+import org.upgrad.upstac.exception.ConflictException;
+import org.upgrad.upstac.shared.BulkRowOutcome;
+import org.upgrad.upstac.testrequests.flow.TestRequestFlowRow;
 import org.upgrad.upstac.testrequests.flow.TestRequestFlowService;
+import org.upgrad.upstac.testrequests.models.TestRequestDetail;
+import org.upgrad.upstac.testrequests.models.TestRequestHistoryRow;
+import org.upgrad.upstac.testrequests.watch.TestRequestVersions;
+import org.upgrad.upstac.testrequests.watch.TestRequestWaiters;
 import org.upgrad.upstac.users.User;
 
 import java.util.List;
 import java.util.Optional;
 
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asConflict;
+
 
 @RestController
 public class TestRequestController {
 
+    static final int MAX_BULK_SIZE = 500;
+
+    // A bulk create that loses a race on one contact is rolled back and run again, up to this many times
+    static final int BULK_ATTEMPTS = 3;
+
     Logger log = LoggerFactory.getLogger(TestRequestController.class);
 
 
@@ -35,40 +52,101 @@ public class TestRequestController {
     @Autowired
     private TestRequestFlowService testRequestFlowService;
 
+    @Autowired
+    private TestRequestVersions testRequestVersions;
+
+    @Autowired
+    private TestRequestWaiters testRequestWaiters;
+
     @PostMapping("/api/testrequests")
     public TestRequest createRequest(@RequestBody CreateTestRequest testRequest) {
         try {
             User user = userLoggedInService.getLoggedInUser();
             TestRequest result = testRequestService.createTestRequestFrom(user, testRequest);
             return result;
+        } catch (ConflictException e) {
+            throw asConflict(e.getMessage());
         } catch (AppException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
 
     }
 
+    @PostMapping("/api/testrequests/bulk")
+    public List<BulkRowOutcome> createRequests(@RequestBody List<CreateTestRequest> testRequests) {
+
+        if (testRequests.size() > MAX_BULK_SIZE)
+            throw asBadRequest("At most " + MAX_BULK_SIZE + " requests can be registered at once");
+
+        User user = userLoggedInService.getLoggedInUser();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return testRequestService.createTestRequestsFrom(user, testRequests);
+            } catch (ConflictException e) {
+                // The winner has committed by now, so the next attempt rejects just that row and keeps the rest
+                if (attempt == BULK_ATTEMPTS)
+                    throw asConflict(e.getMessage());
+                log.debug("Retrying bulk create after a contact conflict");
+            }
+        }
+    }
+
     @GetMapping("/api/testrequests")
-    public List<TestRequest> requestHistory() {
+    public List<TestRequestHistoryRow> requestHistory(WebRequest webRequest) {
 
         User user = userLoggedInService.getLoggedInUser();
+
+        // Taken before the read, so a change racing the read can only make the next check miss
+        if (webRequest.checkNotModified(testRequestVersions.historyETagOf(user.getId())))
+            return null;
+
         return testRequestService.getHistoryFor(user);
 
 
     }
 
     @GetMapping("/api/testrequests/{id}")
-    public Optional<TestRequest> getById(@PathVariable Long id) {
+    public ResponseEntity<TestRequestDetail> getById(@PathVariable Long id, WebRequest webRequest) {
+
+        Optional<Long> version = testRequestVersions.versionOf(id);
+        if (!version.isPresent())
+            return ResponseEntity.notFound().build();
+
+        if (webRequest.checkNotModified(TestRequestVersions.eTagOf(id, version.get())))
+            return null;
+
+        return testRequestQueryService.findDetailById(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+
+
+    }
+
+    // Answers as soon as the request moves past the given version, or with 304 after the timeout.
+    // Only for requests the caller may see (their own, or ones assigned to them); any other id is not found
+    @GetMapping("/api/testrequests/{id}/await")
+    public DeferredResult<ResponseEntity<TestRequestDetail>> awaitChange(@PathVariable Long id,
+                                                                         @RequestParam Long version,
+                                                                         @RequestParam(defaultValue = "30") int timeoutSeconds) {
+
+        User user = userLoggedInService.getLoggedInUser();
+
+        if (!testRequestQueryService.findTestRequestForUserByID(user, id).isPresent()) {
+            DeferredResult<ResponseEntity<TestRequestDetail>> notFound = new DeferredResult<>();
+            notFound.setResult(ResponseEntity.notFound().build());
+            return notFound;
+        }
 
-        return testRequestQueryService.getTestRequestById(id);
+        return testRequestWaiters.await(id, version, timeoutSeconds);
 
 
     }
 
     @GetMapping("/api/testrequests/flow/{id}")
-    public List<TestRequestFlow> getByFlowId(@PathVariable Long id) {
+    public List<TestRequestFlowRow> getByFlowId(@PathVariable Long id) {
 
-        TestRequest testRequest = testRequestQueryService.getTestRequestById(id).get();
-        return testRequestFlowService.findByRequest(testRequest);
+        return testRequestFlowService.findRowsByRequestId(id);
 
 
     }
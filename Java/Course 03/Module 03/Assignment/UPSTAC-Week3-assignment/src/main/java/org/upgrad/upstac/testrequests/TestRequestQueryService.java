@@ -3,23 +3,33 @@ package org.upgrad.upstac.testrequests;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.upgrad.upstac.exception.AppException;
-import org.upgrad.upstac.testrequests.consultation.Consultation;
 import org.upgrad.upstac.testrequests.consultation.ConsultationRepository;
-import org.upgrad.upstac.testrequests.lab.LabResult;
 import org.upgrad.upstac.testrequests.lab.LabResultRepository;
+import org.upgrad.upstac.shared.KeysetPage;
+import org.upgrad.upstac.testrequests.models.TestRequestDetail;
+import org.upgrad.upstac.testrequests.models.TestRequestHistoryRow;
+import org.upgrad.upstac.testrequests.models.TestRequestQueueRow;
+import org.upgrad.upstac.testrequests.queue.WorkQueueIndex;
 import org.upgrad.upstac.users.User;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @Validated
+@Transactional(readOnly = true)
 public class TestRequestQueryService {
 
+    static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private TestRequestRepository testRequestRepository;
 
@@ -31,6 +41,10 @@ public class TestRequestQueryService {
     @Autowired
     private ConsultationRepository consultationRepository;
 
+
+    @Autowired
+    private WorkQueueIndex workQueueIndex;
+
     private static Logger logger = LoggerFactory.getLogger(TestRequestQueryService.class);
 
 
@@ -45,6 +59,11 @@ public class TestRequestQueryService {
         return testRequestRepository.findById(id);
     }
 
+    public Optional<TestRequestDetail> findDetailById(Long id) {
+
+        return testRequestRepository.findDetailById(id);
+    }
+
 
 
 
@@ -53,29 +72,83 @@ public class TestRequestQueryService {
 
     }
 
+    public List<TestRequestQueueRow> findQueueBy(RequestStatus requestStatus) {
+        return testRequestRepository.findQueueByStatus(requestStatus);
+    }
 
+    public KeysetPage<TestRequestQueueRow> findPageBy(RequestStatus requestStatus, Long after, int limit, Integer pinCode, LocalDate createdFrom) {
 
-    public List<TestRequest> findByTester(User user) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Long cursor = (null == after) ? 0L : after;
 
-        return  labResultRepository.findByTester(user)
-                .stream()
-                .map(LabResult::getRequest)
-                .collect(Collectors.toList());
+        // Unfiltered queue pages come straight off the in-memory index
+        if (null == pinCode && null == createdFrom && WorkQueueIndex.isIndexed(requestStatus))
+            return findIndexedPageBy(requestStatus, cursor, pageSize);
 
+        List<TestRequestQueueRow> rows = testRequestRepository.findQueuePage(requestStatus, cursor, pinCode, createdFrom, PageRequest.of(0, pageSize + 1));
+        return KeysetPage.of(rows, pageSize, TestRequestQueueRow::getRequestId);
     }
 
-    public List<TestRequest> findByDoctor(User user) {
-        return  consultationRepository.findByDoctor(user)
-                .stream()
-                .map(Consultation::getRequest)
-                .collect(Collectors.toList());
+    public int countBy(RequestStatus requestStatus) {
+        return workQueueIndex.count(requestStatus);
+    }
+
+    // Only the requests on the page are read; one that has moved on since the index was read is left out
+    private KeysetPage<TestRequestQueueRow> findIndexedPageBy(RequestStatus requestStatus, long cursor, int pageSize) {
+
+        long[] ids = workQueueIndex.idsAfter(requestStatus, cursor, pageSize + 1);
+
+        List<Long> pageIds = new ArrayList<>(pageSize);
+        for (int i = 0; i < ids.length && i < pageSize; i++)
+            pageIds.add(ids[i]);
+
+        List<TestRequestQueueRow> items = pageIds.isEmpty()
+                ? new ArrayList<>()
+                : testRequestRepository.findQueueByIds(pageIds, requestStatus);
+
+        Long nextCursor = (ids.length > pageSize) ? ids[pageSize - 1] : null;
+        return new KeysetPage<>(items, nextCursor);
+    }
+
+
+
+    // Active work is what is still on the user's desk: assigned to them and not yet submitted
+
+    public List<TestRequestHistoryRow> findByTester(User user, boolean activeOnly) {
+
+        return  testRequestRepository.findWorkByTester(user, activeOnly ? RequestStatus.LAB_TEST_IN_PROGRESS : null, 0L, Pageable.unpaged());
+
+    }
+
+    public KeysetPage<TestRequestHistoryRow> findPageByTester(User user, boolean activeOnly, Long after, int limit) {
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<TestRequestHistoryRow> rows = testRequestRepository.findWorkByTester(user,
+                activeOnly ? RequestStatus.LAB_TEST_IN_PROGRESS : null,
+                (null == after) ? 0L : after,
+                PageRequest.of(0, pageSize + 1));
+        return KeysetPage.of(rows, pageSize, TestRequestHistoryRow::getRequestId);
+    }
+
+    public List<TestRequestHistoryRow> findByDoctor(User user, boolean activeOnly) {
+        return  testRequestRepository.findWorkByDoctor(user, activeOnly ? RequestStatus.DIAGNOSIS_IN_PROCESS : null, 0L, Pageable.unpaged());
+    }
+
+    public KeysetPage<TestRequestHistoryRow> findPageByDoctor(User user, boolean activeOnly, Long after, int limit) {
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<TestRequestHistoryRow> rows = testRequestRepository.findWorkByDoctor(user,
+                activeOnly ? RequestStatus.DIAGNOSIS_IN_PROCESS : null,
+                (null == after) ? 0L : after,
+                PageRequest.of(0, pageSize + 1));
+        return KeysetPage.of(rows, pageSize, TestRequestHistoryRow::getRequestId);
     }
 
 
     public Optional<TestRequest> findTestRequestForUserByID(User user,Long id) {
 
 
-        logger.info("findTestRequestForUserByID" + user.getRoles().toString());
+        logger.info("findTestRequestForUserByID" + id);
 
         if(user.doesRoleIsUser())
             return  findByUserAndID(user,id);
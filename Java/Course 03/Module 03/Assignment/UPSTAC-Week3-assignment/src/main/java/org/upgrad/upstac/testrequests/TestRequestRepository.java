@@ -1,19 +1,78 @@
 package org.upgrad.upstac.testrequests;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.upgrad.upstac.testrequests.models.TestRequestDetail;
+import org.upgrad.upstac.testrequests.models.TestRequestHistoryRow;
+import org.upgrad.upstac.testrequests.models.TestRequestQueueRow;
 import org.upgrad.upstac.users.User;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 
 public interface TestRequestRepository extends JpaRepository<TestRequest,Long> {
 
+	// API views are selected column by column, so list endpoints never load the entity graph
+
+	String QUEUE_ROW = "select new org.upgrad.upstac.testrequests.models.TestRequestQueueRow("
+			+ "t.requestId, t.name, t.gender, t.age, t.pinCode, t.created, t.status) from TestRequest t";
+
+	String HISTORY_ROW = "select new org.upgrad.upstac.testrequests.models.TestRequestHistoryRow("
+			+ "t.requestId, t.name, t.gender, t.age, t.pinCode, t.created, t.status,"
+			+ " l.resultId, l.result, l.updatedOn, c.id, c.suggestion, c.comments, c.updatedOn)"
+			+ " from TestRequest t left join t.labResult l left join t.consultation c";
 
 	Optional<TestRequest> findByRequestId(Long id);
 
+	// Entity lists fetch with TestRequest.WITH_RESULTS: one select however many rows come back
+
+	@EntityGraph(TestRequest.WITH_RESULTS)
 	List<TestRequest> findByCreatedBy(User user);
 
+	@Query(HISTORY_ROW + " where t.createdBy = :user order by t.requestId asc")
+	List<TestRequestHistoryRow> findHistoryByCreatedBy(@Param("user") User user);
+
+	// A tester's or doctor's work list in one query; a null status means every request they worked on
+	@Query(HISTORY_ROW + " where l.tester = :tester and t.requestId > :after"
+			+ " and (:status is null or t.status = :status)"
+			+ " order by t.requestId asc")
+	List<TestRequestHistoryRow> findWorkByTester(@Param("tester") User tester,
+												 @Param("status") RequestStatus status,
+												 @Param("after") Long after,
+												 Pageable pageable);
+
+	@Query(HISTORY_ROW + " where c.doctor = :doctor and t.requestId > :after"
+			+ " and (:status is null or t.status = :status)"
+			+ " order by t.requestId asc")
+	List<TestRequestHistoryRow> findWorkByDoctor(@Param("doctor") User doctor,
+												 @Param("status") RequestStatus status,
+												 @Param("after") Long after,
+												 Pageable pageable);
+
+	@Query("select new org.upgrad.upstac.testrequests.models.TestRequestDetail("
+			+ "t.requestId, coalesce(t.version, 0), t.name, t.gender, t.age, t.address, t.email, t.phoneNumber, t.pinCode, t.created, t.status,"
+			+ " u.userName, u.firstName, u.lastName,"
+			+ " l.resultId, l.bloodPressure, l.heartBeat, l.temperature, l.oxygenLevel, l.comments, l.result, l.updatedOn,"
+			+ " lt.userName, lt.firstName, lt.lastName,"
+			+ " c.id, c.suggestion, c.comments, c.updatedOn,"
+			+ " cd.userName, cd.firstName, cd.lastName)"
+			+ " from TestRequest t left join t.createdBy u"
+			+ " left join t.labResult l left join l.tester lt"
+			+ " left join t.consultation c left join c.doctor cd"
+			+ " where t.requestId = :id")
+	Optional<TestRequestDetail> findDetailById(@Param("id") Long id);
+
 	Optional<TestRequest> findByRequestIdAndStatus(Long id,RequestStatus status);
 	Optional<TestRequest> findByCreatedByAndRequestId(User user,Long id);
 	List<TestRequest> findByEmail(String email);
@@ -29,7 +88,65 @@ public interface TestRequestRepository extends JpaRepository<TestRequest,Long> {
 	
 	List<TestRequest> findByName(String name);
 
+	@EntityGraph(TestRequest.WITH_RESULTS)
 	List<TestRequest> findByStatus(RequestStatus status);
+
+	@Query("select coalesce(t.version, 0) from TestRequest t where t.requestId = :id")
+	Optional<Long> findVersionById(@Param("id") Long id);
+
+	@Query("select t.requestId from TestRequest t where t.status = :status order by t.requestId asc")
+	List<Long> findIdsByStatus(@Param("status") RequestStatus status);
+
+	// The lab result and consultation come in the same select, not one select per request
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@EntityGraph(attributePaths = {"labResult", "consultation"})
+	List<TestRequest> findByRequestIdInAndStatus(Collection<Long> ids, RequestStatus status);
+
+	// Moves the request only if it is still in the expected status; returns 0 when another caller got there first.
+	// The updated row stays locked until the transaction ends.
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("update TestRequest t set t.status = :to where t.requestId = :id and t.status = :from")
+	int claim(@Param("id") Long id, @Param("from") RequestStatus from, @Param("to") RequestStatus to);
+
+	// Locks the request until the transaction ends, so two transitions of it run one after the other
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select t from TestRequest t where t.requestId = :id")
+	Optional<TestRequest> findForUpdate(@Param("id") Long id);
+
+	// Like findByRequestIdInAndStatus, but rows another claimer holds are skipped rather than waited for.
+	// Lock timeout -2 is FOR UPDATE SKIP LOCKED only on dialects that have it (MySQL8Dialect, H2 does not);
+	// elsewhere it is a plain FOR UPDATE and claimers wait their turn. The page caps how many get locked
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+	@Query("select t from TestRequest t where t.requestId in :ids and t.status = :status order by t.requestId asc")
+	List<TestRequest> findClaimable(@Param("ids") Collection<Long> ids, @Param("status") RequestStatus status, Pageable pageable);
+
+	@Query(QUEUE_ROW + " where t.status = :status order by t.requestId asc")
+	List<TestRequestQueueRow> findQueueByStatus(@Param("status") RequestStatus status);
+
+	@Query(QUEUE_ROW + " where t.requestId in :ids and t.status = :status order by t.requestId asc")
+	List<TestRequestQueueRow> findQueueByIds(@Param("ids") Collection<Long> ids, @Param("status") RequestStatus status);
+
+	@Query(QUEUE_ROW + " where t.status = :status and t.requestId > :after"
+			+ " and (:pinCode is null or t.pinCode = :pinCode)"
+			+ " and (:createdFrom is null or t.created >= :createdFrom)"
+			+ " order by t.requestId asc")
+	List<TestRequestQueueRow> findQueuePage(@Param("status") RequestStatus status,
+											@Param("after") Long after,
+											@Param("pinCode") Integer pinCode,
+											@Param("createdFrom") LocalDate createdFrom,
+											Pageable pageable);
+
+	// Group counts for reconciling the dashboard counters: rows of (key, count)
+
+	@Query("select t.status, count(t) from TestRequest t group by t.status")
+	List<Object[]> countByStatus();
+
+	@Query("select t.pinCode, count(t) from TestRequest t where t.pinCode is not null group by t.pinCode")
+	List<Object[]> countByPinCode();
+
+	@Query("select t.gender, count(t) from TestRequest t where t.gender is not null group by t.gender")
+	List<Object[]> countByGender();
 	
 
 }
@@ -4,28 +4,113 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.shared.BulkRowOutcome;
+import org.upgrad.upstac.testrequests.active.ActiveTestRequest;
+import org.upgrad.upstac.testrequests.active.ActiveTestRequestRegistry;
+import org.upgrad.upstac.testrequests.events.TestRequestEventBus;
+import org.upgrad.upstac.testrequests.events.TestRequestTransitioned;
+import org.upgrad.upstac.testrequests.models.TestRequestHistoryRow;
 import org.upgrad.upstac.users.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.upgrad.upstac.testrequests.active.ActiveTestRequestRegistry.asKey;
 
 @Service
 public class TestRequestService {
 
+    private static final String NO_CONTACT = "\n";
+
     @Autowired
     private TestRequestRepository testRequestRepository;
 
+    @Autowired
+    private ActiveTestRequestRegistry activeTestRequestRegistry;
+
+    @Autowired
+    private TestRequestEventBus testRequestEventBus;
 
 
     private static Logger logger = LoggerFactory.getLogger(TestRequestService.class);
 
 
 
+    @Transactional
     public TestRequest createTestRequestFrom(User user,CreateTestRequest createTestRequest) {
 
         validateExistingRequestsNotPresentWithSameDetails(createTestRequest);
 
+        TestRequest testRequest = testRequestRepository.save(newTestRequest(user, createTestRequest));
+        activeTestRequestRegistry.register(Collections.singletonList(testRequest));
+        testRequestEventBus.publish(TestRequestTransitioned.created(testRequest, user));
+        return testRequest;
+    }
+
+    // Registers a whole batch: one query checks every contact in it against the requests in progress,
+    // and the accepted rows are inserted together. Rejected rows are reported, not thrown;
+    // a create racing in from elsewhere for one of the same contacts fails the batch on the registry
+    // with a ConflictException, and a retry then reports that row through the check above.
+    @Transactional
+    public List<BulkRowOutcome> createTestRequestsFrom(User user, List<CreateTestRequest> createTestRequests) {
+
+        Set<String> emails = collect(createTestRequests, CreateTestRequest::getEmail);
+        Set<String> phoneNumbers = collect(createTestRequests, CreateTestRequest::getPhoneNumber);
+
+        Set<String> activeEmails = new HashSet<>();
+        Set<String> activePhoneNumbers = new HashSet<>();
+        for (ActiveTestRequest active : activeTestRequestRegistry.findByContacts(emails, phoneNumbers)) {
+            addIfPresent(activeEmails, active.getEmail());
+            addIfPresent(activePhoneNumbers, active.getPhoneNumber());
+        }
+
+        // Rejected rows get their outcome straight away; accepted ones once their insert has given them an id
+        BulkRowOutcome[] outcomes = new BulkRowOutcome[createTestRequests.size()];
+        List<TestRequest> accepted = new ArrayList<>();
+        List<Integer> acceptedRows = new ArrayList<>();
+
+        for (int i = 0; i < createTestRequests.size(); i++) {
+            CreateTestRequest createTestRequest = createTestRequests.get(i);
+            String email = asKey(createTestRequest.getEmail());
+            String phoneNumber = asKey(createTestRequest.getPhoneNumber());
+
+            if (null == email && null == phoneNumber) {
+                outcomes[i] = BulkRowOutcome.rejected(i + 1, null, "Email or PhoneNumber is required");
+            } else if (activeEmails.contains(email) || activePhoneNumbers.contains(phoneNumber)) {
+                outcomes[i] = BulkRowOutcome.rejected(i + 1, null, "A Request with same PhoneNumber or Email is already in progress");
+            } else {
+                accepted.add(newTestRequest(user, createTestRequest));
+                acceptedRows.add(i);
+            }
+
+            // Later rows with the same contact are duplicates of this one, accepted or not
+            addIfPresent(activeEmails, email);
+            addIfPresent(activePhoneNumbers, phoneNumber);
+        }
+
+        activeTestRequestRegistry.register(testRequestRepository.saveAll(accepted));
+        for (int k = 0; k < accepted.size(); k++) {
+            TestRequest testRequest = accepted.get(k);
+            int row = acceptedRows.get(k);
+            outcomes[row] = BulkRowOutcome.accepted(row + 1, testRequest.getRequestId());
+            testRequestEventBus.publish(TestRequestTransitioned.created(testRequest, user));
+        }
+
+        return Arrays.asList(outcomes);
+    }
+
+    private TestRequest newTestRequest(User user, CreateTestRequest createTestRequest) {
+
         TestRequest testRequest = new TestRequest();
 
         testRequest.setName(createTestRequest.getName());
@@ -39,29 +124,45 @@ public class TestRequestService {
         testRequest.setGender(createTestRequest.getGender());
 
         testRequest.setCreatedBy(user);
-        return testRequestRepository.save(testRequest);
+        return testRequest;
     }
 
-    public void validateExistingRequestsNotPresentWithSameDetails(CreateTestRequest createTestRequest) {
-        List<TestRequest> testRequests = testRequestRepository.findByEmailOrPhoneNumber(createTestRequest.getEmail(), createTestRequest.getPhoneNumber());
+    private static void addIfPresent(Set<String> values, String value) {
+        if (null != value)
+            values.add(value);
+    }
 
+    // An IN list may not be empty, so a value no email or phone number can take stands in for "none"
+    private static Set<String> collect(List<CreateTestRequest> createTestRequests, Function<CreateTestRequest, String> field) {
 
-        for (TestRequest testRequest : testRequests) {
+        Set<String> values = createTestRequests.stream()
+                .map(field)
+                .map(ActiveTestRequestRegistry::asKey)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(HashSet::new));
 
-            if (testRequest.getStatus().equals(RequestStatus.COMPLETED) == false)
-                throw new AppException("A Request with same PhoneNumber or Email is already in progress ");
-        }
+        if (values.isEmpty())
+            values.add(NO_CONTACT);
+        return values;
+    }
+
+    public void validateExistingRequestsNotPresentWithSameDetails(CreateTestRequest createTestRequest) {
+
+        if (activeTestRequestRegistry.isActive(createTestRequest.getEmail(), createTestRequest.getPhoneNumber()))
+            throw new AppException("A Request with same PhoneNumber or Email is already in progress ");
 
     }
 
+    @Transactional(readOnly = true)
     public List<TestRequest> findByStatus(RequestStatus requestStatus){
 
         return testRequestRepository.findByStatus(requestStatus);
     }
 
-    public List<TestRequest> getHistoryFor(User loggedInUser){
+    @Transactional(readOnly = true)
+    public List<TestRequestHistoryRow> getHistoryFor(User loggedInUser){
 
-        return testRequestRepository.findByCreatedBy(loggedInUser);
+        return testRequestRepository.findHistoryByCreatedBy(loggedInUser);
     }
 
 
@@ -2,32 +2,50 @@ package org.upgrad.upstac.testrequests;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.exception.ConflictException;
+import org.upgrad.upstac.testrequests.active.ActiveTestRequestRegistry;
 import org.upgrad.upstac.testrequests.consultation.Consultation;
 import org.upgrad.upstac.testrequests.consultation.ConsultationService;
 import org.upgrad.upstac.testrequests.consultation.CreateConsultationRequest;
-import org.upgrad.upstac.testrequests.flow.TestRequestFlowService;
+import org.upgrad.upstac.testrequests.events.TestRequestEventBus;
+import org.upgrad.upstac.testrequests.events.TestRequestTransitioned;
+import org.upgrad.upstac.testrequests.lab.BulkLabResult;
 import org.upgrad.upstac.testrequests.lab.LabResult;
 import org.upgrad.upstac.testrequests.lab.LabResultService;
 import org.upgrad.upstac.testrequests.lab.CreateLabResult;
+import org.upgrad.upstac.testrequests.queue.WorkQueueIndex;
 import org.upgrad.upstac.users.User;
 
-import javax.transaction.Transactional;
 import javax.validation.Valid;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @Validated
 public class TestRequestUpdateService {
 
+    static final int MAX_BATCH_SIZE = 50;
+
+    // Candidates read from the work queue index per batch slot, to get past rows other claimers hold
+    static final int CLAIM_OVERFETCH = 4;
+
     @Autowired
     private TestRequestRepository testRequestRepository;
 
 
     @Autowired
-    private TestRequestFlowService testRequestFlowService;
+    private TestRequestEventBus testRequestEventBus;
 
 
     @Autowired
@@ -37,6 +55,12 @@ public class TestRequestUpdateService {
     @Autowired
     private ConsultationService consultationService;
 
+    @Autowired
+    private ActiveTestRequestRegistry activeTestRequestRegistry;
+
+    @Autowired
+    private WorkQueueIndex workQueueIndex;
+
 
     @Transactional
     public TestRequest saveTestRequest(@Valid TestRequest result) {
@@ -46,45 +70,161 @@ public class TestRequestUpdateService {
     }
 
 
-    TestRequest updateStatusAndSave(TestRequest testRequest, RequestStatus status) {
-        testRequest.setStatus(status);
-        return saveTestRequest(testRequest);
-    }
-
-
+    @Transactional
     public TestRequest assignForLabTest(Long id, User tester) {
-        TestRequest testRequest = testRequestRepository.findByRequestIdAndStatus(id,RequestStatus.INITIATED).orElseThrow(()-> new AppException("Invalid ID"));
+        TestRequest testRequest = claim(id, RequestStatus.INITIATED, RequestStatus.LAB_TEST_IN_PROGRESS);
         LabResult labResult= labResultService.assignForLabTest(testRequest,tester);
-        testRequestFlowService.log(testRequest, RequestStatus.INITIATED, RequestStatus.LAB_TEST_IN_PROGRESS, tester);
         testRequest.setLabResult(labResult);
-        return updateStatusAndSave(testRequest, RequestStatus.LAB_TEST_IN_PROGRESS);
+        testRequestEventBus.publish(TestRequestTransitioned.of(testRequest, RequestStatus.INITIATED, RequestStatus.LAB_TEST_IN_PROGRESS, tester));
+        return testRequest;
     }
 
+    @Transactional
+    public List<TestRequest> assignForLabTests(int count, User tester) {
+        List<TestRequest> testRequests = claimOldest(count, RequestStatus.INITIATED, RequestStatus.LAB_TEST_IN_PROGRESS);
+
+        for (TestRequest testRequest : testRequests) {
+            testRequest.setLabResult(labResultService.assignForLabTest(testRequest,tester));
+            testRequestEventBus.publish(TestRequestTransitioned.of(testRequest, RequestStatus.INITIATED, RequestStatus.LAB_TEST_IN_PROGRESS, tester));
+        }
+        return testRequests;
+    }
+
+    @Transactional
     public TestRequest updateLabTest(Long id,@Valid CreateLabResult createLabResult, User tester) {
 
-        TestRequest testRequest = testRequestRepository.findByRequestIdAndStatus(id,RequestStatus.LAB_TEST_IN_PROGRESS).orElseThrow(()-> new AppException("Invalid ID or State"));
+        TestRequest testRequest = advance(id, RequestStatus.LAB_TEST_IN_PROGRESS, RequestStatus.LAB_TEST_COMPLETED);
 
 
-        labResultService.updateLabTest(testRequest,createLabResult);
-        testRequestFlowService.log(testRequest, RequestStatus.LAB_TEST_IN_PROGRESS, RequestStatus.LAB_TEST_COMPLETED, tester);
-        return updateStatusAndSave(testRequest, RequestStatus.LAB_TEST_COMPLETED);
+        LabResult labResult = labResultService.updateLabTest(testRequest,createLabResult);
+        testRequest.setLabResult(labResult);
+        testRequestEventBus.publish(TestRequestTransitioned.of(testRequest, RequestStatus.LAB_TEST_IN_PROGRESS, RequestStatus.LAB_TEST_COMPLETED, tester));
+        return testRequest;
+    }
+
+    // Applies a chunk of uploaded lab results in one transaction.
+    // Returns, per row and in order, null when the row was applied or the reason it was rejected.
+    @Transactional
+    public List<String> updateLabTests(List<BulkLabResult> rows, User tester) {
+
+        Set<Long> ids = rows.stream().map(BulkLabResult::getRequestId).collect(Collectors.toSet());
+
+        // Row locks keep single updates from interleaving with the chunk until it commits
+        Map<Long, TestRequest> inProgress = testRequestRepository.findByRequestIdInAndStatus(ids, RequestStatus.LAB_TEST_IN_PROGRESS)
+                .stream()
+                .collect(Collectors.toMap(TestRequest::getRequestId, Function.identity()));
+
+        List<String> errors = new ArrayList<>(rows.size());
+        Set<Long> applied = new HashSet<>();
+
+        for (BulkLabResult row : rows) {
+            TestRequest testRequest = inProgress.get(row.getRequestId());
+
+            if (null == testRequest || null == testRequest.getLabResult()) {
+                errors.add(BulkLabResult.INVALID_ID_OR_STATE);
+            } else if (applied.add(row.getRequestId()) == false) {
+                errors.add(BulkLabResult.DUPLICATE_REQUEST_ID);
+            } else {
+                labResultService.applyLabTest(testRequest.getLabResult(), row);
+                testRequest.moveTo(RequestStatus.LAB_TEST_COMPLETED);
+                testRequestEventBus.publish(TestRequestTransitioned.of(testRequest, RequestStatus.LAB_TEST_IN_PROGRESS, RequestStatus.LAB_TEST_COMPLETED, tester));
+                errors.add(null);
+            }
+        }
+        return errors;
     }
 
+    @Transactional
     public TestRequest assignForConsultation(Long id, User doctor) {
-        TestRequest testRequest = testRequestRepository.findByRequestIdAndStatus(id,RequestStatus.LAB_TEST_COMPLETED).orElseThrow(()-> new AppException("Invalid ID or State"));
+        TestRequest testRequest = claim(id, RequestStatus.LAB_TEST_COMPLETED, RequestStatus.DIAGNOSIS_IN_PROCESS);
         Consultation consultation =consultationService.assignForConsultation(testRequest,doctor);
-        testRequestFlowService.log(testRequest, RequestStatus.LAB_TEST_COMPLETED, RequestStatus.DIAGNOSIS_IN_PROCESS, doctor);
         testRequest.setConsultation(consultation);
-        return updateStatusAndSave(testRequest, RequestStatus.DIAGNOSIS_IN_PROCESS);
+        testRequestEventBus.publish(TestRequestTransitioned.of(testRequest, RequestStatus.LAB_TEST_COMPLETED, RequestStatus.DIAGNOSIS_IN_PROCESS, doctor));
+        return testRequest;
     }
 
+    @Transactional
+    public List<TestRequest> assignForConsultations(int count, User doctor) {
+        List<TestRequest> testRequests = claimOldest(count, RequestStatus.LAB_TEST_COMPLETED, RequestStatus.DIAGNOSIS_IN_PROCESS);
+
+        for (TestRequest testRequest : testRequests) {
+            testRequest.setConsultation(consultationService.assignForConsultation(testRequest,doctor));
+            testRequestEventBus.publish(TestRequestTransitioned.of(testRequest, RequestStatus.LAB_TEST_COMPLETED, RequestStatus.DIAGNOSIS_IN_PROCESS, doctor));
+        }
+        return testRequests;
+    }
 
+
+    @Transactional
     public TestRequest updateConsultation(Long id, @Valid CreateConsultationRequest createConsultationRequest, User doctor) {
 
-        TestRequest testRequest = testRequestRepository.findByRequestIdAndStatus(id,RequestStatus.DIAGNOSIS_IN_PROCESS).orElseThrow(()-> new AppException("Invalid ID or State"));
-        consultationService.updateConsultation(testRequest,createConsultationRequest);
-        testRequestFlowService.log(testRequest, RequestStatus.DIAGNOSIS_IN_PROCESS, RequestStatus.COMPLETED, doctor);
-        return updateStatusAndSave(testRequest, RequestStatus.COMPLETED);
+        TestRequest testRequest = advance(id, RequestStatus.DIAGNOSIS_IN_PROCESS, RequestStatus.COMPLETED);
+        Consultation consultation = consultationService.updateConsultation(testRequest,createConsultationRequest);
+        activeTestRequestRegistry.release(testRequest.getRequestId());
+        testRequest.setConsultation(consultation);
+        testRequestEventBus.publish(TestRequestTransitioned.of(testRequest, RequestStatus.DIAGNOSIS_IN_PROCESS, RequestStatus.COMPLETED, doctor));
+        return testRequest;
+    }
+
+
+    // Each transition is one transaction: the request row is locked by its first statement, and the status change,
+    // the lab result or consultation and the flow record are all written by the flush at commit
+
+    // Claims with a conditional UPDATE as the transaction's first statement: of two claimers only one sees
+    // a row updated, and the other gets a ConflictException without reading or writing anything else.
+    // A request that exists but has already left the 'from' status was claimed by someone else.
+    private TestRequest claim(Long id, RequestStatus from, RequestStatus to) {
+
+        if (testRequestRepository.claim(id, from, to) == 0) {
+            if (!testRequestRepository.existsById(id))
+                throw new AppException("Invalid ID");
+            throw new ConflictException("Test request " + id + " is already assigned");
+        }
+
+        // Read after the claim, so it carries the timestamps and version of the status it left
+        TestRequest testRequest = testRequestRepository.findByRequestId(id).orElseThrow(()-> new AppException("Invalid ID"));
+        testRequest.moveTo(to);
+        return testRequest;
+    }
+
+    // Claims up to count of the oldest requests in 'from'; rows another claimer holds or has taken are skipped.
+    // Concurrent claimers all see the same oldest ids, so candidates are read a few batches at a time
+    // and the walk goes on past skipped rows until the batch is full or the queue runs out.
+    private List<TestRequest> claimOldest(int count, RequestStatus from, RequestStatus to) {
+        int batchSize = Math.max(1, Math.min(count, MAX_BATCH_SIZE));
+        int pageSize = batchSize * CLAIM_OVERFETCH;
+
+        List<TestRequest> testRequests = new ArrayList<>(batchSize);
+        long after = 0L;
+
+        while (testRequests.size() < batchSize) {
+            long[] page = workQueueIndex.idsAfter(from, after, pageSize);
+            if (page.length == 0)
+                break;
+
+            List<Long> candidates = new ArrayList<>(page.length);
+            for (long id : page)
+                candidates.add(id);
+
+            testRequests.addAll(testRequestRepository.findClaimable(candidates, from, PageRequest.of(0, batchSize - testRequests.size())));
+
+            if (page.length < pageSize)
+                break;
+            after = page[page.length - 1];
+        }
+
+        for (TestRequest testRequest : testRequests)
+            testRequest.moveTo(to);
+        return testRequests;
+    }
+
+    private TestRequest advance(Long id, RequestStatus from, RequestStatus to) {
+        TestRequest testRequest = testRequestRepository.findForUpdate(id)
+                .filter(request -> request.getStatus() == from)
+                .orElseThrow(()-> new AppException("Invalid ID or State"));
+
+        testRequest.moveTo(to);
+        return testRequest;
     }
 
 
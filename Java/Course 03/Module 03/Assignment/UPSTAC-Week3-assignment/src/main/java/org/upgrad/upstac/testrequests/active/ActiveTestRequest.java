@@ -0,0 +1,26 @@
+package org.upgrad.upstac.testrequests.active;
+
+import lombok.Data;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * One row per test request that is not yet COMPLETED, keyed by the request id.
+ * The unique columns make "one open request per email / phone number" a database guarantee.
+ */
+@Data
+@Entity
+public class ActiveTestRequest {
+
+    @Id
+    private Long requestId;
+
+    @Column(unique = true)
+    private String email;
+
+    @Column(unique = true)
+    private String phoneNumber;
+
+}
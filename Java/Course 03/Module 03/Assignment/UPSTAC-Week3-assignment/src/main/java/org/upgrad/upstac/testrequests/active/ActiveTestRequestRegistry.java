@@ -0,0 +1,139 @@
+package org.upgrad.upstac.testrequests.active;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.upgrad.upstac.exception.ConflictException;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequest;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.upgrad.upstac.shared.StringValidator.isNotEmptyOrNull;
+
+/**
+ * Answers "is there an open request for this email or phone number" with one indexed probe,
+ * instead of loading every historical request for the contact.
+ * Rows are added when a request is created and removed when it is COMPLETED.
+ */
+@Service
+public class ActiveTestRequestRegistry {
+
+    static final String ALREADY_IN_PROGRESS = "A Request with same PhoneNumber or Email is already in progress ";
+
+    @Autowired
+    private ActiveTestRequestRepository activeTestRequestRepository;
+
+    @Autowired
+    private TestRequestRepository testRequestRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private static Logger logger = LoggerFactory.getLogger(ActiveTestRequestRegistry.class);
+
+
+    public boolean isActive(String email, String phoneNumber) {
+
+        String activeEmail = asKey(email);
+        String activePhoneNumber = asKey(phoneNumber);
+
+        if (null == activeEmail && null == activePhoneNumber)
+            return false;
+        if (null == activeEmail)
+            return activeTestRequestRepository.existsByPhoneNumber(activePhoneNumber);
+        if (null == activePhoneNumber)
+            return activeTestRequestRepository.existsByEmail(activeEmail);
+
+        return activeTestRequestRepository.existsByEmailOrPhoneNumber(activeEmail, activePhoneNumber);
+    }
+
+    public List<ActiveTestRequest> findByContacts(Collection<String> emails, Collection<String> phoneNumbers) {
+        return activeTestRequestRepository.findByContacts(emails, phoneNumbers);
+    }
+
+    // Must run in the transaction that inserts the requests: a concurrent create for the
+    // same person fails here on the unique columns (ConflictException) and rolls the whole insert back.
+    // The requests themselves are flushed first, so any other failure is theirs and is rethrown as it is
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void register(Collection<TestRequest> testRequests) {
+
+        entityManager.flush();
+
+        try {
+            for (TestRequest testRequest : testRequests)
+                entityManager.persist(asActive(testRequest));
+
+            entityManager.flush();
+        } catch (PersistenceException e) {
+            if (e.getCause() instanceof ConstraintViolationException)
+                throw new ConflictException(ALREADY_IN_PROGRESS, e);
+            throw e;
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Long requestId) {
+        activeTestRequestRepository.release(requestId);
+    }
+
+    // Fills the registry from the requests already in progress, the first time it is deployed
+    @Transactional
+    public void rebuildIfEmpty() {
+
+        if (activeTestRequestRepository.count() > 0)
+            return;
+
+        Set<String> emails = new HashSet<>();
+        Set<String> phoneNumbers = new HashSet<>();
+        int registered = 0;
+
+        for (RequestStatus status : RequestStatus.values()) {
+            if (status == RequestStatus.COMPLETED)
+                continue;
+
+            for (TestRequest testRequest : testRequestRepository.findByStatus(status)) {
+                ActiveTestRequest active = asActive(testRequest);
+
+                // Older data may hold two open requests for one person; the first one wins
+                if (isDuplicate(emails, active.getEmail()) || isDuplicate(phoneNumbers, active.getPhoneNumber())) {
+                    logger.warn("Skipping duplicate open request " + testRequest.getRequestId());
+                    continue;
+                }
+                entityManager.persist(active);
+                registered++;
+            }
+        }
+        logger.info("Registered " + registered + " open test requests");
+    }
+
+    private static boolean isDuplicate(Set<String> seen, String key) {
+        return null != key && seen.add(key) == false;
+    }
+
+    private static ActiveTestRequest asActive(TestRequest testRequest) {
+        ActiveTestRequest active = new ActiveTestRequest();
+        active.setRequestId(testRequest.getRequestId());
+        active.setEmail(asKey(testRequest.getEmail()));
+        active.setPhoneNumber(asKey(testRequest.getPhoneNumber()));
+        return active;
+    }
+
+    // A blank contact identifies nobody, so it is stored as null and never collides.
+    // Others are trimmed and lower-cased, so " A@x.com" and "a@x.com" are the same person
+    public static String asKey(String contact) {
+        return isNotEmptyOrNull(contact) && contact.trim().isEmpty() == false ? contact.trim().toLowerCase(Locale.ROOT) : null;
+    }
+}
@@ -0,0 +1,29 @@
+package org.upgrad.upstac.testrequests.active;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+
+public interface ActiveTestRequestRepository extends JpaRepository<ActiveTestRequest,Long> {
+
+
+    boolean existsByEmail(String email);
+
+    boolean existsByPhoneNumber(String phoneNumber);
+
+    boolean existsByEmailOrPhoneNumber(String email, String phoneNumber);
+
+    @Query("select a from ActiveTestRequest a where a.email in :emails or a.phoneNumber in :phoneNumbers")
+    List<ActiveTestRequest> findByContacts(@Param("emails") Collection<String> emails, @Param("phoneNumbers") Collection<String> phoneNumbers);
+
+    @Modifying
+    @Query("delete from ActiveTestRequest a where a.requestId = :requestId")
+    int release(@Param("requestId") Long requestId);
+
+
+}
@@ -11,11 +11,13 @@ import java.time.LocalDate;
 
 @Data
 @Entity
+@Table(indexes = @Index(name = "idx_consultation_doctor", columnList = "doctor_id"))
 public class Consultation {
 
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "consultation_seq")
+    @SequenceGenerator(name = "consultation_seq", sequenceName = "consultation_seq", allocationSize = 50)
     Long id;
 
     @OneToOne(fetch = FetchType.LAZY)
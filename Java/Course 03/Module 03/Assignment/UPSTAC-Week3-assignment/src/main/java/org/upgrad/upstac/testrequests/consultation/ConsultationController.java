@@ -4,21 +4,32 @@ package org.upgrad.upstac.testrequests.consultation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.upgrad.upstac.config.security.UserLoggedInService;
 import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.exception.ConflictException;
 import org.upgrad.upstac.testrequests.RequestStatus;
 import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.testrequests.TestRequestQueryService;
 import org.upgrad.upstac.testrequests.TestRequestUpdateService;
 import org.upgrad.upstac.testrequests.flow.TestRequestFlowService;
+import org.upgrad.upstac.testrequests.models.TestRequestHistoryRow;
+import org.upgrad.upstac.testrequests.models.TestRequestQueueRow;
+import org.upgrad.upstac.testrequests.queue.QueueFeed;
+import org.upgrad.upstac.shared.KeysetPage;
 import org.upgrad.upstac.users.User;
 
 import javax.validation.ConstraintViolationException;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asConflict;
 import static org.upgrad.upstac.exception.UpgradResponseStatusException.asConstraintViolation;
 
 
@@ -44,30 +55,86 @@ public class ConsultationController {
     @Autowired
     private UserLoggedInService userLoggedInService;
 
+    @Autowired
+    private QueueFeed queueFeed;
+
 
 
     @GetMapping("/in-queue")
     @PreAuthorize("hasAnyRole('DOCTOR')")
-    public List<TestRequest> getForConsultations()  {
+    public List<TestRequestQueueRow> getForConsultations()  {
 
         //return the list of test request which are in the completed status
-        return testRequestQueryService.findBy(RequestStatus.LAB_TEST_COMPLETED);
+        return testRequestQueryService.findQueueBy(RequestStatus.LAB_TEST_COMPLETED);
+    }
+
+    @GetMapping("/in-queue/page")
+    @PreAuthorize("hasAnyRole('DOCTOR')")
+    public KeysetPage<TestRequestQueueRow> getForConsultationsPage(@RequestParam(required = false) Long after,
+                                                @RequestParam(defaultValue = "20") int limit,
+                                                @RequestParam(required = false) Integer pinCode,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate createdFrom)  {
+
+        // Return one page of test requests in the LAB_TEST_COMPLETED status, oldest first
+        return testRequestQueryService.findPageBy(RequestStatus.LAB_TEST_COMPLETED, after, limit, pinCode, createdFrom);
+    }
+
+    @GetMapping(value = "/in-queue/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('DOCTOR')")
+    public SseEmitter getForConsultationsFeed(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId)  {
+
+        // Stream changes to the LAB_TEST_COMPLETED queue, resuming after lastEventId when the client reconnects
+        return queueFeed.subscribe(RequestStatus.LAB_TEST_COMPLETED, lastEventId);
+    }
+
+    @GetMapping("/in-queue/count")
+    @PreAuthorize("hasAnyRole('DOCTOR')")
+    public int countForConsultations()  {
+
+        // Return how many test requests are waiting in the LAB_TEST_COMPLETED status
+        return testRequestQueryService.countBy(RequestStatus.LAB_TEST_COMPLETED);
     }
 
     @GetMapping
     @PreAuthorize("hasAnyRole('DOCTOR')")
-    public List<TestRequest> getForDoctor()  {
+    public List<TestRequestHistoryRow> getForDoctor(@RequestParam(defaultValue = "false") boolean activeOnly)  {
 
         // Get user details from the service
         User doctor = userLoggedInService.getLoggedInUser();
 
         //return all the tests associated with the doctor
-        return testRequestQueryService.findByDoctor(doctor);
+        return testRequestQueryService.findByDoctor(doctor, activeOnly);
+
+    }
+
+    @GetMapping("/page")
+    @PreAuthorize("hasAnyRole('DOCTOR')")
+    public KeysetPage<TestRequestHistoryRow> getForDoctorPage(@RequestParam(defaultValue = "false") boolean activeOnly,
+                                                           @RequestParam(required = false) Long after,
+                                                           @RequestParam(defaultValue = "20") int limit)  {
+
+        User doctor = userLoggedInService.getLoggedInUser();
 
+        // Return one page of the test requests associated with the logged in doctor
+        return testRequestQueryService.findPageByDoctor(doctor, activeOnly, after, limit);
     }
 
 
 
+    @PreAuthorize("hasAnyRole('DOCTOR')")
+    @PutMapping("/assign/batch")
+    public List<TestRequestQueueRow> assignForConsultations(@RequestParam(defaultValue = "10") int count) {
+
+        //Get user details from the service
+        User doctor = userLoggedInService.getLoggedInUser();
+
+        //Assign up to count of the oldest LAB_TEST_COMPLETED requests to the logged in doctor
+        // Only the queue columns go back, not the claimed entities with their patients and results
+        return testRequestUpdateService.assignForConsultations(count,doctor).stream()
+                .map(TestRequestQueueRow::of)
+                .collect(Collectors.toList());
+    }
+
     @PreAuthorize("hasAnyRole('DOCTOR')")
     @PutMapping("/assign/{id}")
     public TestRequest assignForConsultation(@PathVariable Long id) {
@@ -82,6 +149,9 @@ public class ConsultationController {
             //return the test request
             return testRequest;
 
+        } catch (ConflictException e) {
+            // Another doctor claimed the same request first
+            throw asConflict(e.getMessage());
         }catch (AppException e) {
             // The system throws app exception if the id is invalid or the test is not in the LAB_TEST_COMPLETED status
             throw asBadRequest(e.getMessage());
@@ -106,6 +176,8 @@ public class ConsultationController {
 
         } catch (ConstraintViolationException e) {
             throw asConstraintViolation(e);
+        } catch (ConflictException e) {
+            throw asConflict(e.getMessage());
         }catch (AppException e) {
             throw asBadRequest(e.getMessage());
         }
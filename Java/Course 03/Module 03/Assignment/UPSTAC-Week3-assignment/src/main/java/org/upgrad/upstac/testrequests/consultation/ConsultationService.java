@@ -9,7 +9,6 @@ import org.upgrad.upstac.exception.AppException;
 import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.users.User;
 
-import javax.transaction.Transactional;
 import java.time.LocalDate;
 
 @Service
@@ -22,7 +21,6 @@ public class ConsultationService {
     private static Logger logger = LoggerFactory.getLogger(ConsultationService.class);
 
 
-    @Transactional
     public Consultation assignForConsultation( TestRequest testRequest, User doctor) {
         Consultation consultation = new Consultation();
         consultation.setDoctor(doctor);
@@ -0,0 +1,168 @@
+package org.upgrad.upstac.testrequests.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers {@link TestRequestTransitioned} events to each listener as its {@link TestRequestEventListener.Delivery} asks:
+ * in the publishing transaction, or once that transaction commits.
+ *
+ * Each async listener has a single thread, so it sees events in publish order, and a bounded queue.
+ * When a listener falls that far behind, the publishing thread waits for room, so requests slow down
+ * instead of events piling up. An event that still finds no room is dropped rather than delivered out
+ * of turn, and the listener is told through {@link TestRequestEventListener#onMissed()} once it has
+ * caught up with the rest.
+ */
+@Component
+public class TestRequestEventBus {
+
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+    private final List<TestRequestEventListener> transactionalListeners = new ArrayList<>();
+    private final List<TestRequestEventListener> inlineListeners = new ArrayList<>();
+    private final List<Dispatcher> dispatchers = new ArrayList<>();
+
+    private static Logger logger = LoggerFactory.getLogger(TestRequestEventBus.class);
+
+    @Autowired
+    public TestRequestEventBus(List<TestRequestEventListener> listeners,
+                               @Value("${upstac.events.queue-capacity:10000}") int queueCapacity,
+                               @Value("${upstac.events.publish-wait-ms:1000}") long publishWaitMillis) {
+
+        for (TestRequestEventListener listener : listeners) {
+            switch (listener.delivery()) {
+                case IN_TRANSACTION:
+                    transactionalListeners.add(listener);
+                    break;
+                case AFTER_COMMIT:
+                    inlineListeners.add(listener);
+                    break;
+                default:
+                    dispatchers.add(new Dispatcher(listener, queueCapacity, publishWaitMillis));
+            }
+        }
+    }
+
+    public void publish(TestRequestTransitioned event) {
+
+        for (TestRequestEventListener listener : transactionalListeners)
+            listener.on(event);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive() == false) {
+            dispatch(event);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                dispatch(event);
+            }
+        });
+    }
+
+    private void dispatch(TestRequestTransitioned event) {
+
+        for (TestRequestEventListener listener : inlineListeners)
+            deliver(listener, event);
+
+        for (Dispatcher dispatcher : dispatchers)
+            dispatcher.executor.execute(() -> deliver(dispatcher.listener, event));
+    }
+
+    // One failing listener must not stop the others, nor fail a request that has already committed
+    private static void deliver(TestRequestEventListener listener, TestRequestTransitioned event) {
+        try {
+            listener.on(event);
+        } catch (RuntimeException e) {
+            logger.error("Listener " + nameOf(listener) + " failed on " + event, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+
+        for (Dispatcher dispatcher : dispatchers)
+            dispatcher.executor.shutdown();
+
+        for (Dispatcher dispatcher : dispatchers) {
+            if (dispatcher.executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS) == false)
+                logger.warn("Dropping undelivered events for " + nameOf(dispatcher.listener));
+        }
+    }
+
+    private static String nameOf(TestRequestEventListener listener) {
+        return ClassUtils.getUserClass(listener).getSimpleName();
+    }
+
+    private static class Dispatcher {
+
+        private final TestRequestEventListener listener;
+        private final ExecutorService executor;
+        // Set when an event was dropped; cleared by the listener's thread as it reports the gap
+        private final AtomicBoolean missed = new AtomicBoolean();
+
+        Dispatcher(TestRequestEventListener listener, int queueCapacity, long publishWaitMillis) {
+            this.listener = listener;
+
+            String threadName = "events-" + nameOf(listener);
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (delivery, executor) -> waitForRoom(delivery, executor, publishWaitMillis)) {
+
+                // On the listener's thread, after everything queued before the drop has been delivered
+                @Override
+                protected void afterExecute(Runnable delivery, Throwable failure) {
+                    if (getQueue().isEmpty() && missed.compareAndSet(true, false))
+                        deliverMissed();
+                }
+            };
+        }
+
+        private void waitForRoom(Runnable delivery, ThreadPoolExecutor executor, long publishWaitMillis) {
+
+            if (executor.isShutdown())
+                return;
+
+            try {
+                if (executor.getQueue().offer(delivery, publishWaitMillis, TimeUnit.MILLISECONDS))
+                    return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            missed.set(true);
+            // So the gap is still reported when the queue drained meanwhile and nothing else gets published
+            executor.getQueue().offer(() -> { });
+            logger.warn("Dropped an event for " + nameOf(listener) + ", which is too far behind");
+        }
+
+        private void deliverMissed() {
+            try {
+                listener.onMissed();
+            } catch (RuntimeException e) {
+                logger.error("Listener " + nameOf(listener) + " failed on missed events", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.upgrad.upstac.testrequests.events;
+
+/**
+ * Receives every {@link TestRequestTransitioned}. Implementations are picked up as beans.
+ */
+public interface TestRequestEventListener {
+
+    enum Delivery {
+        // As the event is published, inside the transition's transaction; a failure rolls the transition back
+        IN_TRANSACTION,
+        // On the committing thread once the transaction commits; must be cheap
+        AFTER_COMMIT,
+        // On the listener's own thread and queue once the transaction commits
+        ASYNC
+    }
+
+    void on(TestRequestTransitioned event);
+
+    // ASYNC only: events were dropped because this listener fell too far behind; called in order,
+    // after the events published before the drop. Listeners that depend on seeing every event resync here
+    default void onMissed() {
+    }
+
+    default Delivery delivery() {
+        return Delivery.ASYNC;
+    }
+}
@@ -0,0 +1,61 @@
+package org.upgrad.upstac.testrequests.events;
+
+import lombok.Getter;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequest;
+import org.upgrad.upstac.testrequests.consultation.DoctorSuggestion;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.models.Gender;
+
+import java.time.Instant;
+
+/**
+ * A test request moved from one status to another; {@code from} is null when it was just created.
+ * Holds ids and values only, never entities, so listeners on other threads need no session.
+ */
+@Getter
+public class TestRequestTransitioned {
+
+    private final Long requestId;
+    private final RequestStatus from;
+    private final RequestStatus to;
+    private final long version;
+    private final Long changedById;
+    private final Long createdById;
+    private final Integer pinCode;
+    private final Gender gender;
+    private final TestStatus result;
+    private final DoctorSuggestion suggestion;
+    private final Instant occurredAt;
+    // When the request entered the status it left; null on creation and for requests from before it was kept
+    private final Instant fromSince;
+
+    private TestRequestTransitioned(TestRequest testRequest, RequestStatus from, RequestStatus to, User changedBy) {
+        this.requestId = testRequest.getRequestId();
+        this.from = from;
+        this.to = to;
+        this.version = testRequest.currentVersion();
+        this.changedById = changedBy.getId();
+        this.createdById = (null == testRequest.getCreatedBy()) ? null : testRequest.getCreatedBy().getId();
+        this.pinCode = testRequest.getPinCode();
+        this.gender = testRequest.getGender();
+        this.result = (null == testRequest.getLabResult()) ? null : testRequest.getLabResult().getResult();
+        this.suggestion = (null == testRequest.getConsultation()) ? null : testRequest.getConsultation().getSuggestion();
+        this.occurredAt = (null == testRequest.getStatusSince()) ? Instant.now() : testRequest.getStatusSince();
+        this.fromSince = (null == from) ? null : testRequest.getPreviousStatusSince();
+    }
+
+    public static TestRequestTransitioned created(TestRequest testRequest, User createdBy) {
+        return new TestRequestTransitioned(testRequest, null, testRequest.getStatus(), createdBy);
+    }
+
+    public static TestRequestTransitioned of(TestRequest testRequest, RequestStatus from, RequestStatus to, User changedBy) {
+        return new TestRequestTransitioned(testRequest, from, to, changedBy);
+    }
+
+    @Override
+    public String toString() {
+        return "TestRequestTransitioned{" + requestId + ": " + from + " -> " + to + "}";
+    }
+}
@@ -7,6 +7,7 @@ import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.users.User;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.time.LocalDate;
 
 @Data
@@ -15,7 +16,8 @@ public class TestRequestFlow {
 
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "test_request_flow_seq")
+    @SequenceGenerator(name = "test_request_flow_seq", sequenceName = "test_request_flow_seq", allocationSize = 50)
     Long id;
 
 
@@ -32,6 +34,8 @@ public class TestRequestFlow {
 
     private LocalDate happenedOn=LocalDate.now();
 
+    private Instant happenedAt;
+
 
 
 
@@ -0,0 +1,32 @@
+package org.upgrad.upstac.testrequests.flow;
+
+import lombok.Getter;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.users.models.UserSummary;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * One step of a request's flow as the history screen shows it.
+ */
+@Getter
+public class TestRequestFlowRow {
+
+    private final Long id;
+    private final RequestStatus fromStatus;
+    private final RequestStatus toStatus;
+    private final LocalDate happenedOn;
+    private final Instant happenedAt;
+    private final UserSummary changedBy;
+
+    public TestRequestFlowRow(Long id, RequestStatus fromStatus, RequestStatus toStatus, LocalDate happenedOn,
+                              Instant happenedAt, String userName, String firstName, String lastName) {
+        this.id = id;
+        this.fromStatus = fromStatus;
+        this.toStatus = toStatus;
+        this.happenedOn = happenedOn;
+        this.happenedAt = happenedAt;
+        this.changedBy = UserSummary.of(userName, firstName, lastName);
+    }
+}
@@ -2,29 +2,50 @@ package org.upgrad.upstac.testrequests.flow;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.upgrad.upstac.testrequests.TestRequest;
-import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.events.TestRequestEventListener;
+import org.upgrad.upstac.testrequests.events.TestRequestTransitioned;
 import org.upgrad.upstac.users.User;
 
-import javax.transaction.Transactional;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.ZoneId;
 import java.util.List;
 
 @Service
 @Validated
-public class TestRequestFlowService {
+public class TestRequestFlowService implements TestRequestEventListener {
 
     @Autowired
     private TestRequestFlowRepository testRequestFlowRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    // The audit row is part of the transition it records; creating a request is not part of the flow
+    @Override
+    public Delivery delivery() {
+        return Delivery.IN_TRANSACTION;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void on(TestRequestTransitioned event) {
+
+        if (null == event.getFrom())
+            return;
 
-    @Transactional
-    public void log(TestRequest testRequest, RequestStatus from, RequestStatus to, User changedBy) {
         TestRequestFlow testRequestFlow = new TestRequestFlow();
-        testRequestFlow.setChangedBy(changedBy);
-        testRequestFlow.setRequest(testRequest);
-        testRequestFlow.setFromStatus(from);
-        testRequestFlow.setToStatus(to);
+        testRequestFlow.setChangedBy(entityManager.getReference(User.class, event.getChangedById()));
+        testRequestFlow.setRequest(entityManager.getReference(TestRequest.class, event.getRequestId()));
+        testRequestFlow.setFromStatus(event.getFrom());
+        testRequestFlow.setToStatus(event.getTo());
+        testRequestFlow.setHappenedOn(event.getOccurredAt().atZone(ZoneId.systemDefault()).toLocalDate());
+        testRequestFlow.setHappenedAt(event.getOccurredAt());
         testRequestFlowRepository.save(testRequestFlow);
     }
 
@@ -35,4 +56,9 @@ public class TestRequestFlowService {
         return testRequestFlowRepository.findByRequest(testRequest);
     }
 
+    public List<TestRequestFlowRow> findRowsByRequestId(Long requestId) {
+
+        return testRequestFlowRepository.findRowsByRequestId(requestId);
+    }
+
 }
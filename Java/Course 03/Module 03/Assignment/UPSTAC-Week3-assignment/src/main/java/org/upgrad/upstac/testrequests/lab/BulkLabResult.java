@@ -0,0 +1,21 @@
+package org.upgrad.upstac.testrequests.lab;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.validation.constraints.NotNull;
+
+@Getter
+@Setter
+public class BulkLabResult extends CreateLabResult {
+
+    // Why a row was rejected, as fixed codes; exception text never reaches the outcome
+    public static final String UNREADABLE_ROW = "UNREADABLE_ROW";
+    public static final String INVALID_FIELDS = "INVALID_FIELDS";
+    public static final String INVALID_ID_OR_STATE = "INVALID_ID_OR_STATE";
+    public static final String DUPLICATE_REQUEST_ID = "DUPLICATE_REQUEST_ID";
+    public static final String CHUNK_FAILED = "CHUNK_FAILED";
+
+    @NotNull
+    private Long requestId;
+}
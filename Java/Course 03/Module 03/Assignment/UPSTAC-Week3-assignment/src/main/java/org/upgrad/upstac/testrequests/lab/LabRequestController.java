@@ -4,21 +4,38 @@ package org.upgrad.upstac.testrequests.lab;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.upgrad.upstac.config.security.UserLoggedInService;
 import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.exception.ConflictException;
 import org.upgrad.upstac.testrequests.RequestStatus;
 import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.testrequests.TestRequestQueryService;
 import org.upgrad.upstac.testrequests.TestRequestUpdateService;
 import org.upgrad.upstac.testrequests.flow.TestRequestFlowService;
+import org.upgrad.upstac.testrequests.models.TestRequestHistoryRow;
+import org.upgrad.upstac.testrequests.models.TestRequestQueueRow;
+import org.upgrad.upstac.testrequests.queue.QueueFeed;
+import org.upgrad.upstac.shared.KeysetPage;
 import org.upgrad.upstac.users.User;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolationException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.upgrad.upstac.exception.UpgradResponseStatusException.asBadRequest;
+import static org.upgrad.upstac.exception.UpgradResponseStatusException.asConflict;
 import static org.upgrad.upstac.exception.UpgradResponseStatusException.asConstraintViolation;
 
 
@@ -26,6 +43,8 @@ import static org.upgrad.upstac.exception.UpgradResponseStatusException.asConstr
 @RequestMapping("/api/labrequests")
 public class LabRequestController {
 
+    static final String NDJSON = "application/x-ndjson";
+
     Logger log = LoggerFactory.getLogger(LabRequestController.class);
 
 
@@ -40,6 +59,12 @@ public class LabRequestController {
     @Autowired
     private TestRequestFlowService testRequestFlowService;
 
+    @Autowired
+    private LabResultBulkService labResultBulkService;
+
+    @Autowired
+    private QueueFeed queueFeed;
+
 
 
     @Autowired
@@ -49,25 +74,78 @@ public class LabRequestController {
 
     @GetMapping("/to-be-tested")
     @PreAuthorize("hasAnyRole('TESTER')")
-    public List<TestRequest> getForTests()  {
+    public List<TestRequestQueueRow> getForTests()  {
 
        // Return all tests which are in the INITIATED status
-       return testRequestQueryService.findBy(RequestStatus.INITIATED);
+       return testRequestQueryService.findQueueBy(RequestStatus.INITIATED);
 
     }
 
+    @GetMapping("/to-be-tested/page")
+    @PreAuthorize("hasAnyRole('TESTER')")
+    public KeysetPage<TestRequestQueueRow> getForTestsPage(@RequestParam(required = false) Long after,
+                                                @RequestParam(defaultValue = "20") int limit,
+                                                @RequestParam(required = false) Integer pinCode,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate createdFrom)  {
+
+        // Return one page of tests in the INITIATED status, oldest first
+        return testRequestQueryService.findPageBy(RequestStatus.INITIATED, after, limit, pinCode, createdFrom);
+    }
+
+    @GetMapping(value = "/to-be-tested/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('TESTER')")
+    public SseEmitter getForTestsFeed(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId)  {
+
+        // Stream changes to the INITIATED queue, resuming after lastEventId when the client reconnects
+        return queueFeed.subscribe(RequestStatus.INITIATED, lastEventId);
+    }
+
+    @GetMapping("/to-be-tested/count")
+    @PreAuthorize("hasAnyRole('TESTER')")
+    public int countForTests()  {
+
+        // Return how many tests are waiting in the INITIATED status
+        return testRequestQueryService.countBy(RequestStatus.INITIATED);
+    }
+
     @GetMapping
     @PreAuthorize("hasAnyRole('TESTER')")
-    public List<TestRequest> getForTester()  {
+    public List<TestRequestHistoryRow> getForTester(@RequestParam(defaultValue = "false") boolean activeOnly)  {
 
         //Get user details from the service
         User tester =userLoggedInService.getLoggedInUser();
 
         //Return the lists of tests associated with the logged in user
-        return testRequestQueryService.findByTester(tester);
+        return testRequestQueryService.findByTester(tester, activeOnly);
 
     }
 
+    @GetMapping("/page")
+    @PreAuthorize("hasAnyRole('TESTER')")
+    public KeysetPage<TestRequestHistoryRow> getForTesterPage(@RequestParam(defaultValue = "false") boolean activeOnly,
+                                                           @RequestParam(required = false) Long after,
+                                                           @RequestParam(defaultValue = "20") int limit)  {
+
+        User tester =userLoggedInService.getLoggedInUser();
+
+        // Return one page of the tests associated with the logged in user
+        return testRequestQueryService.findPageByTester(tester, activeOnly, after, limit);
+    }
+
+
+    @PreAuthorize("hasAnyRole('TESTER')")
+    @PutMapping("/assign/batch")
+    public List<TestRequestQueueRow> assignForLabTests(@RequestParam(defaultValue = "10") int count) {
+
+        //Get user details from the service
+        User tester = userLoggedInService.getLoggedInUser();
+
+        //Assign up to count of the oldest INITIATED tests to the logged in tester
+        // Only the queue columns go back, not the claimed entities with their patients and results
+        return testRequestUpdateService.assignForLabTests(count,tester).stream()
+                .map(TestRequestQueueRow::of)
+                .collect(Collectors.toList());
+    }
 
     @PreAuthorize("hasAnyRole('TESTER')")
     @PutMapping("/assign/{id}")
@@ -76,8 +154,13 @@ public class LabRequestController {
         //Get user details from the service
         User tester =userLoggedInService.getLoggedInUser();
 
-        //Assign the test with id to the logged in tester
-        return testRequestUpdateService.assignForLabTest(id,tester);
+        try {
+            //Assign the test with id to the logged in tester
+            return testRequestUpdateService.assignForLabTest(id,tester);
+        } catch (ConflictException e) {
+            // Another tester claimed the same request first
+            throw asConflict(e.getMessage());
+        }
     }
 
     @PreAuthorize("hasAnyRole('TESTER')")
@@ -92,11 +175,27 @@ public class LabRequestController {
 
         } catch (ConstraintViolationException e) {
             throw asConstraintViolation(e);
+        } catch (ConflictException e) {
+            throw asConflict(e.getMessage());
         }catch (AppException e) {
             throw asBadRequest(e.getMessage());
         }
     }
 
+    @PreAuthorize("hasAnyRole('TESTER')")
+    @PutMapping(value = "/update/bulk", consumes = {NDJSON, "text/csv"}, produces = NDJSON)
+    public void updateLabTests(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        User tester=userLoggedInService.getLoggedInUser();
+        boolean csv = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType("text/csv"));
+
+        // The upload is read and the per-row report written as a stream, never buffered whole
+        response.setContentType(NDJSON);
+        try (BufferedReader input = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+            labResultBulkService.updateLabTests(input, csv, tester, response.getWriter());
+        }
+    }
+
 
 
 
@@ -11,11 +11,13 @@ import java.time.LocalDate;
 
 @Data
 @Entity
+@Table(indexes = @Index(name = "idx_lab_result_tester", columnList = "tester_id"))
 public class LabResult {
 
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lab_result_seq")
+    @SequenceGenerator(name = "lab_result_seq", sequenceName = "lab_result_seq", allocationSize = 50)
     Long resultId;
 
     @OneToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,224 @@
+package org.upgrad.upstac.testrequests.lab;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.upgrad.upstac.shared.BulkRowOutcome;
+import org.upgrad.upstac.testrequests.TestRequestUpdateService;
+import org.upgrad.upstac.users.User;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Reads lab results from an NDJSON or CSV upload one line at a time and applies them in chunks,
+ * writing one NDJSON outcome line per input row as each chunk completes.
+ * Only a single chunk is held in memory, whatever the size of the upload.
+ *
+ * CSV files start with a header naming the columns, in any order and any case. Every row is one line:
+ * values may be quoted to hold commas or "" for a quote, but a quoted value cannot span lines, and a
+ * row whose quote is left open is rejected as unreadable.
+ */
+@Service
+public class LabResultBulkService {
+
+    @Autowired
+    private TestRequestUpdateService testRequestUpdateService;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${upstac.lab.bulk-chunk-size:100}")
+    private int chunkSize;
+
+    private static Logger logger = LoggerFactory.getLogger(LabResultBulkService.class);
+
+
+    // Spreadsheet exports often start the file with one
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    public void updateLabTests(BufferedReader input, boolean csv, User tester, Writer output) throws IOException {
+
+        List<BulkLabResult> chunk = new ArrayList<>(chunkSize);
+        List<Long> lines = new ArrayList<>(chunkSize);
+        String[] header = null;
+
+        String line;
+        long lineNumber = 0;
+        while ((line = input.readLine()) != null) {
+            lineNumber++;
+
+            if (lineNumber == 1 && line.length() > 0 && line.charAt(0) == BYTE_ORDER_MARK)
+                line = line.substring(1);
+
+            if (line.trim().isEmpty())
+                continue;
+
+            if (csv && null == header) {
+                header = csvHeader(line);
+                continue;
+            }
+
+            BulkLabResult row;
+            try {
+                row = csv ? fromCsv(header, splitCsvLine(line)) : objectMapper.readValue(line, BulkLabResult.class);
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                logger.debug("Unreadable bulk lab result on line " + lineNumber + ": " + e.getMessage());
+                write(output, BulkRowOutcome.rejected(lineNumber, null, BulkLabResult.UNREADABLE_ROW));
+                continue;
+            }
+
+            String violations = validate(row);
+            if (null != violations) {
+                write(output, BulkRowOutcome.rejected(lineNumber, row.getRequestId(), violations));
+                continue;
+            }
+
+            chunk.add(row);
+            lines.add(lineNumber);
+
+            if (chunk.size() >= chunkSize) {
+                apply(chunk, lines, tester, output);
+                chunk.clear();
+                lines.clear();
+            }
+        }
+
+        if (chunk.isEmpty() == false)
+            apply(chunk, lines, tester, output);
+    }
+
+    private void apply(List<BulkLabResult> chunk, List<Long> lines, User tester, Writer output) throws IOException {
+
+        List<String> errors;
+        try {
+            errors = testRequestUpdateService.updateLabTests(chunk, tester);
+        } catch (RuntimeException e) {
+            logger.error("Bulk lab result chunk failed", e);
+            errors = Collections.nCopies(chunk.size(), BulkLabResult.CHUNK_FAILED);
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Long requestId = chunk.get(i).getRequestId();
+            String error = errors.get(i);
+
+            write(output, null == error ? BulkRowOutcome.accepted(lines.get(i), requestId) : BulkRowOutcome.rejected(lines.get(i), requestId, error));
+        }
+        output.flush();
+    }
+
+    // INVALID_FIELDS with the offending field names, e.g. "INVALID_FIELDS: requestId, result"
+    private String validate(BulkLabResult row) {
+
+        Set<ConstraintViolation<BulkLabResult>> violations = validator.validate(row);
+        if (violations.isEmpty())
+            return null;
+
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath().toString())
+                .distinct()
+                .sorted()
+                .collect(Collectors.joining(", ", BulkLabResult.INVALID_FIELDS + ": ", ""));
+    }
+
+    private void write(Writer output, BulkRowOutcome outcome) throws IOException {
+        output.write(objectMapper.writeValueAsString(outcome));
+        output.write('\n');
+    }
+
+    // Header names lower-cased, so "requestId", "RequestID" and "requestid" all name the same column
+    static String[] csvHeader(String line) {
+
+        String[] header = splitCsvLine(line);
+        for (int i = 0; i < header.length; i++)
+            header[i] = header[i].toLowerCase(Locale.ROOT);
+        return header;
+    }
+
+    // Columns are matched by header name, so their order in the file does not matter
+    static BulkLabResult fromCsv(String[] header, String[] values) {
+
+        BulkLabResult row = new BulkLabResult();
+
+        for (int i = 0; i < header.length && i < values.length; i++) {
+            String value = values[i].isEmpty() ? null : values[i];
+
+            switch (header[i]) {
+                case "requestid":
+                    row.setRequestId(null == value ? null : Long.valueOf(value));
+                    break;
+                case "bloodpressure":
+                    row.setBloodPressure(value);
+                    break;
+                case "heartbeat":
+                    row.setHeartBeat(value);
+                    break;
+                case "temperature":
+                    row.setTemperature(value);
+                    break;
+                case "oxygenlevel":
+                    row.setOxygenLevel(value);
+                    break;
+                case "comments":
+                    row.setComments(value);
+                    break;
+                case "result":
+                    row.setResult(null == value ? null : TestStatus.valueOf(value.toUpperCase(Locale.ROOT)));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return row;
+    }
+
+    // Comma separated values; a value may be wrapped in double quotes, with "" standing for a literal quote.
+    // A quote still open at the end of the line is an error: quoted values cannot span lines
+    static String[] splitCsvLine(String line) {
+
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (quoted) {
+                if (c != '"')
+                    current.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+                    current.append(line.charAt(++i));
+                else
+                    quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted)
+            throw new IllegalArgumentException("Unclosed quote");
+        values.add(current.toString().trim());
+
+        return values.toArray(new String[0]);
+    }
+}
@@ -1,11 +1,17 @@
 package org.upgrad.upstac.testrequests.lab;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.users.User;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
 public interface LabResultRepository extends JpaRepository<LabResult,Long> {
@@ -25,5 +31,20 @@ public interface LabResultRepository extends JpaRepository<LabResult,Long> {
     Optional<LabResult> findByTesterAndRequest(User user,TestRequest testRequest);
     Optional<LabResult> findByRequest(TestRequest request);
 
+    // Rows of (result, count) for completed lab tests
+    @Query("select l.result, count(l) from LabResult l where l.result is not null group by l.result")
+    List<Object[]> countByResult();
+
+    // Completed lab results since a day, read as a stream to rebuild the positivity windows:
+    // rows of (pinCode, result, completed at, updatedOn), one per result; completed at is null for results
+    // from before it was recorded. MySQL only streams with useCursorFetch=true on the connection URL.
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select t.pinCode, l.result,"
+            + " (select max(f.happenedAt) from TestRequestFlow f where f.request = t"
+            + " and f.toStatus = org.upgrad.upstac.testrequests.RequestStatus.LAB_TEST_COMPLETED),"
+            + " l.updatedOn from LabResult l join l.request t"
+            + " where l.result is not null and t.pinCode is not null and l.updatedOn >= :since")
+    Stream<Object[]> streamCompletedSince(@Param("since") LocalDate since);
+
 
 }
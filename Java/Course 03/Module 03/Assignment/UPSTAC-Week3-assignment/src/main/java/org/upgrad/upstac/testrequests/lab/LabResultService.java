@@ -9,7 +9,6 @@ import org.upgrad.upstac.exception.AppException;
 import org.upgrad.upstac.testrequests.TestRequest;
 import org.upgrad.upstac.users.User;
 
-import javax.transaction.Transactional;
 import java.time.LocalDate;
 
 @Service
@@ -32,8 +31,7 @@ public class LabResultService {
         return saveLabResult(labResult);
     }
 
-    @Transactional
-    LabResult saveLabResult(LabResult labResult) {
+    private LabResult saveLabResult(LabResult labResult) {
         return labResultRepository.save(labResult);
     }
 
@@ -51,6 +49,14 @@ public class LabResultService {
 
         LabResult labResult = labResultRepository.findByRequest(testRequest).orElseThrow(()-> new AppException("Invalid Request"));
 
+        return saveLabResult(applyLabTest(labResult, createLabResult));
+
+
+    }
+
+    // Copies the readings onto a managed lab result; the caller's transaction writes it
+    public LabResult applyLabTest(LabResult labResult, CreateLabResult createLabResult) {
+
         labResult.setBloodPressure(createLabResult.getBloodPressure());
         labResult.setComments(createLabResult.getComments());
         labResult.setHeartBeat(createLabResult.getHeartBeat());
@@ -59,9 +65,7 @@ public class LabResultService {
         labResult.setResult(createLabResult.getResult());
         labResult.setUpdatedOn(LocalDate.now());
 
-        return saveLabResult(labResult);
-
-
+        return labResult;
     }
 
 
@@ -0,0 +1,101 @@
+package org.upgrad.upstac.testrequests.models;
+
+import lombok.Getter;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.consultation.DoctorSuggestion;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+import org.upgrad.upstac.users.models.Gender;
+import org.upgrad.upstac.users.models.UserSummary;
+
+import java.time.LocalDate;
+
+/**
+ * Everything about one request: the patient, the full lab readings and the consultation,
+ * with the people involved reduced to {@link UserSummary}. Built from one row of a single query.
+ */
+@Getter
+public class TestRequestDetail {
+
+    private final Long requestId;
+    private final Long version;
+    private final String name;
+    private final Gender gender;
+    private final Integer age;
+    private final String address;
+    private final String email;
+    private final String phoneNumber;
+    private final Integer pinCode;
+    private final LocalDate created;
+    private final RequestStatus status;
+    private final UserSummary createdBy;
+    private final LabResultDetail labResult;
+    private final ConsultationDetail consultation;
+
+    public TestRequestDetail(Long requestId, Long version, String name, Gender gender, Integer age, String address,
+                             String email, String phoneNumber, Integer pinCode, LocalDate created, RequestStatus status,
+                             String createdByUserName, String createdByFirstName, String createdByLastName,
+                             Long resultId, String bloodPressure, String heartBeat, String temperature, String oxygenLevel,
+                             String labComments, TestStatus result, LocalDate resultUpdatedOn,
+                             String testerUserName, String testerFirstName, String testerLastName,
+                             Long consultationId, DoctorSuggestion suggestion, String consultationComments,
+                             LocalDate consultationUpdatedOn,
+                             String doctorUserName, String doctorFirstName, String doctorLastName) {
+        this.requestId = requestId;
+        this.version = version;
+        this.name = name;
+        this.gender = gender;
+        this.age = age;
+        this.address = address;
+        this.email = email;
+        this.phoneNumber = phoneNumber;
+        this.pinCode = pinCode;
+        this.created = created;
+        this.status = status;
+        this.createdBy = UserSummary.of(createdByUserName, createdByFirstName, createdByLastName);
+        this.labResult = (null == resultId) ? null : new LabResultDetail(bloodPressure, heartBeat, temperature, oxygenLevel,
+                labComments, result, resultUpdatedOn, UserSummary.of(testerUserName, testerFirstName, testerLastName));
+        this.consultation = (null == consultationId) ? null : new ConsultationDetail(suggestion, consultationComments,
+                consultationUpdatedOn, UserSummary.of(doctorUserName, doctorFirstName, doctorLastName));
+    }
+
+    @Getter
+    public static class LabResultDetail {
+
+        private final String bloodPressure;
+        private final String heartBeat;
+        private final String temperature;
+        private final String oxygenLevel;
+        private final String comments;
+        private final TestStatus result;
+        private final LocalDate updatedOn;
+        private final UserSummary tester;
+
+        LabResultDetail(String bloodPressure, String heartBeat, String temperature, String oxygenLevel,
+                        String comments, TestStatus result, LocalDate updatedOn, UserSummary tester) {
+            this.bloodPressure = bloodPressure;
+            this.heartBeat = heartBeat;
+            this.temperature = temperature;
+            this.oxygenLevel = oxygenLevel;
+            this.comments = comments;
+            this.result = result;
+            this.updatedOn = updatedOn;
+            this.tester = tester;
+        }
+    }
+
+    @Getter
+    public static class ConsultationDetail {
+
+        private final DoctorSuggestion suggestion;
+        private final String comments;
+        private final LocalDate updatedOn;
+        private final UserSummary doctor;
+
+        ConsultationDetail(DoctorSuggestion suggestion, String comments, LocalDate updatedOn, UserSummary doctor) {
+            this.suggestion = suggestion;
+            this.comments = comments;
+            this.updatedOn = updatedOn;
+            this.doctor = doctor;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.upgrad.upstac.testrequests.models;
+
+import lombok.Getter;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.consultation.DoctorSuggestion;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+import org.upgrad.upstac.users.models.Gender;
+
+import java.time.LocalDate;
+
+/**
+ * A request in someone's history with the outcome so far: the lab result and the doctor's suggestion.
+ * Built from one row of a query that left joins the lab result and consultation.
+ */
+@Getter
+public class TestRequestHistoryRow {
+
+    private final Long requestId;
+    private final String name;
+    private final Gender gender;
+    private final Integer age;
+    private final Integer pinCode;
+    private final LocalDate created;
+    private final RequestStatus status;
+    private final LabResultSummary labResult;
+    private final ConsultationSummary consultation;
+
+    public TestRequestHistoryRow(Long requestId, String name, Gender gender, Integer age, Integer pinCode,
+                                 LocalDate created, RequestStatus status,
+                                 Long resultId, TestStatus result, LocalDate resultUpdatedOn,
+                                 Long consultationId, DoctorSuggestion suggestion, String comments, LocalDate consultationUpdatedOn) {
+        this.requestId = requestId;
+        this.name = name;
+        this.gender = gender;
+        this.age = age;
+        this.pinCode = pinCode;
+        this.created = created;
+        this.status = status;
+        this.labResult = (null == resultId) ? null : new LabResultSummary(result, resultUpdatedOn);
+        this.consultation = (null == consultationId) ? null : new ConsultationSummary(suggestion, comments, consultationUpdatedOn);
+    }
+
+    @Getter
+    public static class LabResultSummary {
+
+        private final TestStatus result;
+        private final LocalDate updatedOn;
+
+        LabResultSummary(TestStatus result, LocalDate updatedOn) {
+            this.result = result;
+            this.updatedOn = updatedOn;
+        }
+    }
+
+    @Getter
+    public static class ConsultationSummary {
+
+        private final DoctorSuggestion suggestion;
+        private final String comments;
+        private final LocalDate updatedOn;
+
+        ConsultationSummary(DoctorSuggestion suggestion, String comments, LocalDate updatedOn) {
+            this.suggestion = suggestion;
+            this.comments = comments;
+            this.updatedOn = updatedOn;
+        }
+    }
+}
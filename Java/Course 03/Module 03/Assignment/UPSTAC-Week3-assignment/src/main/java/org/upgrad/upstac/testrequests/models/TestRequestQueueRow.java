@@ -0,0 +1,40 @@
+package org.upgrad.upstac.testrequests.models;
+
+import lombok.Getter;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequest;
+import org.upgrad.upstac.users.models.Gender;
+
+import java.time.LocalDate;
+
+/**
+ * A request waiting in a tester's or doctor's queue; selected column by column by the queue queries.
+ */
+@Getter
+public class TestRequestQueueRow {
+
+    private final Long requestId;
+    private final String name;
+    private final Gender gender;
+    private final Integer age;
+    private final Integer pinCode;
+    private final LocalDate created;
+    private final RequestStatus status;
+
+    public TestRequestQueueRow(Long requestId, String name, Gender gender, Integer age, Integer pinCode,
+                               LocalDate created, RequestStatus status) {
+        this.requestId = requestId;
+        this.name = name;
+        this.gender = gender;
+        this.age = age;
+        this.pinCode = pinCode;
+        this.created = created;
+        this.status = status;
+    }
+
+    // The same columns, taken from a request already loaded rather than selected again
+    public static TestRequestQueueRow of(TestRequest testRequest) {
+        return new TestRequestQueueRow(testRequest.getRequestId(), testRequest.getName(), testRequest.getGender(),
+                testRequest.getAge(), testRequest.getPinCode(), testRequest.getCreated(), testRequest.getStatus());
+    }
+}
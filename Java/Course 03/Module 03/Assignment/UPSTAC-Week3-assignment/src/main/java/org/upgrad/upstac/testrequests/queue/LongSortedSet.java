@@ -0,0 +1,96 @@
+package org.upgrad.upstac.testrequests.queue;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of primitive longs in one array, oldest (smallest) first.
+ * New request ids arrive in increasing order and claims take the oldest, so both ends are O(1);
+ * anything else is a binary search plus an array copy.
+ * Not thread safe; {@link WorkQueueIndex} guards every instance.
+ */
+class LongSortedSet {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] values = new long[INITIAL_CAPACITY];
+
+    // Live values are values[head, tail)
+    private int head = 0;
+    private int tail = 0;
+
+    int size() {
+        return tail - head;
+    }
+
+    boolean add(long value) {
+
+        if (size() == 0 || value > values[tail - 1]) {
+            ensureRoomAtTail();
+            values[tail++] = value;
+            return true;
+        }
+
+        // Make room first: compacting or growing moves head, which would leave a computed index stale
+        ensureRoomAtTail();
+        int index = Arrays.binarySearch(values, head, tail, value);
+        if (index >= 0)
+            return false;
+
+        int insertAt = -index - 1;
+        System.arraycopy(values, insertAt, values, insertAt + 1, tail - insertAt);
+        values[insertAt] = value;
+        tail++;
+        return true;
+    }
+
+    boolean remove(long value) {
+
+        int index = Arrays.binarySearch(values, head, tail, value);
+        if (index < 0)
+            return false;
+
+        if (index == head) {
+            head++;
+        } else {
+            System.arraycopy(values, index + 1, values, index, tail - index - 1);
+            tail--;
+        }
+
+        if (head == tail)
+            head = tail = 0;
+        return true;
+    }
+
+    // Up to limit values strictly greater than after, in order
+    long[] after(long after, int limit) {
+
+        int index = Arrays.binarySearch(values, head, tail, after);
+        int from = (index >= 0) ? index + 1 : -index - 1;
+        int to = Math.min(tail, from + Math.max(0, limit));
+
+        return Arrays.copyOfRange(values, from, Math.max(from, to));
+    }
+
+    void clear() {
+        values = new long[INITIAL_CAPACITY];
+        head = tail = 0;
+    }
+
+    // Reclaims the slots left by claims at the head before growing
+    private void ensureRoomAtTail() {
+
+        if (tail < values.length)
+            return;
+
+        int size = size();
+        if (head > values.length / 2) {
+            System.arraycopy(values, head, values, 0, size);
+        } else {
+            long[] grown = new long[values.length * 2];
+            System.arraycopy(values, head, grown, 0, size);
+            values = grown;
+        }
+        head = 0;
+        tail = size;
+    }
+}
@@ -0,0 +1,37 @@
+package org.upgrad.upstac.testrequests.queue;
+
+import lombok.Getter;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.models.TestRequestQueueRow;
+
+/**
+ * One change to a work queue as pushed to live clients: a request joined it (with its row) or left it.
+ */
+@Getter
+public class QueueDelta {
+
+    public enum Type {
+        ADDED, REMOVED
+    }
+
+    private final Type type;
+    private final Long requestId;
+    // Where the request went; for REMOVED this tells a claim from anything else
+    private final RequestStatus status;
+    private final TestRequestQueueRow row;
+
+    private QueueDelta(Type type, Long requestId, RequestStatus status, TestRequestQueueRow row) {
+        this.type = type;
+        this.requestId = requestId;
+        this.status = status;
+        this.row = row;
+    }
+
+    public static QueueDelta added(TestRequestQueueRow row) {
+        return new QueueDelta(Type.ADDED, row.getRequestId(), row.getStatus(), row);
+    }
+
+    public static QueueDelta removed(Long requestId, RequestStatus status) {
+        return new QueueDelta(Type.REMOVED, requestId, status, null);
+    }
+}
@@ -0,0 +1,334 @@
+package org.upgrad.upstac.testrequests.queue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.events.TestRequestEventListener;
+import org.upgrad.upstac.testrequests.events.TestRequestTransitioned;
+import org.upgrad.upstac.testrequests.models.TestRequestQueueRow;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes queue deltas to testers and doctors over server-sent events, so their screens load the
+ * queue once and then follow it instead of polling.
+ *
+ * The last deltas of each queue are kept in a ring so a client that reconnects with Last-Event-ID
+ * gets what it missed; one that has fallen out of the ring, or comes from before a restart, is sent
+ * a "reset" and reloads the list. A new connection first gets a "ready" event carrying the current id.
+ * When the event bus drops events for this feed, every client is sent a reset, and ids from before it
+ * can no longer be resumed from.
+ *
+ * Events are only queued on the event thread; each client has a bounded buffer that a small pool
+ * of sender threads writes out. A client too slow to keep its buffer from filling is disconnected
+ * and resumes from the ring when it reconnects, so one slow socket never holds up the others.
+ */
+@Component
+public class QueueFeed implements TestRequestEventListener {
+
+    // The queues there are feeds for: testers pick from INITIATED, doctors from LAB_TEST_COMPLETED
+    static final RequestStatus[] QUEUES = {RequestStatus.INITIATED, RequestStatus.LAB_TEST_COMPLETED};
+
+    static final String DELTA = "delta";
+    static final String RESET = "reset";
+    static final String READY = "ready";
+
+    // Event ids are "<epoch>-<sequence>"; the epoch tells ids of this process from those of an earlier one
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<RequestStatus, Feed> feeds = new EnumMap<>(RequestStatus.class);
+
+    private final int clientBuffer;
+
+    private final ThreadPoolExecutor senders;
+
+    @Autowired
+    private TestRequestRepository testRequestRepository;
+
+    @Value("${upstac.queue-feed.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    private static Logger logger = LoggerFactory.getLogger(QueueFeed.class);
+
+    @Autowired
+    public QueueFeed(@Value("${upstac.queue-feed.replay-size:1000}") int replaySize,
+                     @Value("${upstac.queue-feed.client-buffer:256}") int clientBuffer,
+                     @Value("${upstac.queue-feed.sender-threads:4}") int senderThreads) {
+
+        for (RequestStatus queue : QUEUES)
+            feeds.put(queue, new Feed(replaySize));
+
+        this.clientBuffer = Math.max(1, clientBuffer);
+
+        // A client has at most one drain task queued, so the task queue is bounded by the connections
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(1, senderThreads);
+        this.senders = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "queue-feed-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    public SseEmitter subscribe(RequestStatus queue, String lastEventId) {
+
+        Feed feed = feeds.get(queue);
+        if (null == feed)
+            throw new IllegalArgumentException("There is no feed for " + queue);
+
+        Client client = new Client(newEmitter(), clientBuffer);
+        client.emitter.onCompletion(() -> disconnect(feed, client));
+        client.emitter.onTimeout(() -> disconnect(feed, client));
+        client.emitter.onError(e -> disconnect(feed, client));
+
+        // Replay is queued under the lock, so no delta published meanwhile can overtake it
+        synchronized (feed) {
+            replay(feed, client, lastEventId);
+            feed.clients.add(client);
+        }
+        drain(feed, client);
+        return client.emitter;
+    }
+
+    // Overridden by tests to see what each client is sent
+    SseEmitter newEmitter() {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    @Override
+    public void on(TestRequestTransitioned event) {
+
+        for (RequestStatus queue : QUEUES) {
+            if (event.getTo() == queue) {
+                // The row is read once here, for every client, rather than by each of them
+                List<TestRequestQueueRow> rows = testRequestRepository.findQueueByIds(Collections.singletonList(event.getRequestId()), queue);
+                if (rows.isEmpty() == false)
+                    publish(queue, QueueDelta.added(rows.get(0)));
+            } else if (event.getFrom() == queue) {
+                publish(queue, QueueDelta.removed(event.getRequestId(), event.getTo()));
+            }
+        }
+    }
+
+    // The ring no longer holds every delta, so no client can be brought up to date from it
+    @Override
+    public void onMissed() {
+
+        for (Feed feed : feeds.values()) {
+            List<Client> clients;
+            synchronized (feed) {
+                feed.reset();
+                clients = new ArrayList<>(feed.clients);
+                for (Client client : clients)
+                    enqueue(feed, client, asReset(feed));
+            }
+            for (Client client : clients)
+                drain(feed, client);
+        }
+    }
+
+    // Keeps idle connections from being closed by proxies, and finds the ones that went away
+    @Scheduled(fixedRateString = "${upstac.queue-feed.heartbeat-ms:15000}")
+    public void heartbeat() {
+
+        for (Feed feed : feeds.values()) {
+            for (Client client : feed.clients) {
+                enqueue(feed, client, SseEmitter.event().comment("heartbeat"));
+                drain(feed, client);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    private void publish(RequestStatus queue, QueueDelta delta) {
+
+        Feed feed = feeds.get(queue);
+        List<Client> clients;
+        synchronized (feed) {
+            long sequence = feed.append(delta);
+            clients = new ArrayList<>(feed.clients);
+            // A builder is consumed by the send, so every client gets its own
+            for (Client client : clients)
+                enqueue(feed, client, asEvent(sequence, delta));
+        }
+        for (Client client : clients)
+            drain(feed, client);
+    }
+
+    // Queues what the client missed, or a reset when that is no longer known (or no longer fits its buffer)
+    private void replay(Feed feed, Client client, String lastEventId) {
+
+        if (null == lastEventId) {
+            enqueue(feed, client, SseEmitter.event().name(READY).id(eventId(feed.latest())).data(READY));
+            return;
+        }
+
+        long after = sequenceOf(lastEventId);
+        if (after < 0 || after < feed.oldest() - 1 || after < feed.resetAt || after > feed.latest()
+                || feed.latest() - after > clientBuffer) {
+            enqueue(feed, client, asReset(feed));
+            return;
+        }
+
+        for (long sequence = after + 1; sequence <= feed.latest(); sequence++)
+            enqueue(feed, client, asEvent(sequence, feed.get(sequence)));
+    }
+
+    private long sequenceOf(String lastEventId) {
+
+        int dash = lastEventId.lastIndexOf('-');
+        if (dash < 0 || lastEventId.substring(0, dash).equals(epoch) == false)
+            return -1;
+        try {
+            return Long.parseLong(lastEventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private SseEmitter.SseEventBuilder asReset(Feed feed) {
+        return SseEmitter.event().name(RESET).id(eventId(feed.latest())).data(RESET);
+    }
+
+    private SseEmitter.SseEventBuilder asEvent(long sequence, QueueDelta delta) {
+        return SseEmitter.event().name(DELTA).id(eventId(sequence)).data(delta);
+    }
+
+    private String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    // Never blocks; a client whose buffer is full has fallen behind and is cut off
+    private static void enqueue(Feed feed, Client client, SseEmitter.SseEventBuilder event) {
+
+        if (client.closed || client.pending.offer(event))
+            return;
+
+        client.closed = true;
+        client.pending.clear();
+        feed.clients.remove(client);
+        logger.debug("Dropped slow queue feed connection");
+    }
+
+    // Hands the client to a sender thread unless one already has it
+    private void drain(Feed feed, Client client) {
+
+        if (client.draining.compareAndSet(false, true) == false)
+            return;
+
+        senders.execute(() -> {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (client.closed == false && null != (event = client.pending.poll())) {
+                    if (send(feed, client, event) == false)
+                        return;
+                }
+                if (client.closed)
+                    client.emitter.complete();
+            } finally {
+                client.draining.set(false);
+            }
+            // Something queued after the last poll but before the flag was cleared
+            if (client.pending.isEmpty() == false)
+                drain(feed, client);
+        });
+    }
+
+    private static boolean send(Feed feed, Client client, SseEmitter.SseEventBuilder event) {
+        try {
+            client.emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            disconnect(feed, client);
+            client.emitter.completeWithError(e);
+            logger.debug("Dropped queue feed connection: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void disconnect(Feed feed, Client client) {
+        client.closed = true;
+        client.pending.clear();
+        feed.clients.remove(client);
+    }
+
+    private static class Client {
+
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<SseEmitter.SseEventBuilder> pending;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed = false;
+
+        Client(SseEmitter emitter, int buffer) {
+            this.emitter = emitter;
+            this.pending = new ArrayBlockingQueue<>(buffer);
+        }
+    }
+
+    private static class Feed {
+
+        private final QueueDelta[] ring;
+        // Sequence of the newest delta; deltas are numbered from 1
+        private long latest = 0;
+        // Sequence of the last reset; clients that have not seen it cannot resume
+        private long resetAt = 0;
+
+        private final Set<Client> clients = new CopyOnWriteArraySet<>();
+
+        Feed(int replaySize) {
+            this.ring = new QueueDelta[Math.max(1, replaySize)];
+        }
+
+        long append(QueueDelta delta) {
+            latest++;
+            ring[(int) (latest % ring.length)] = delta;
+            return latest;
+        }
+
+        // Takes a sequence of its own, so the reset's id tells clients that saw it from those that did not
+        void reset() {
+            latest++;
+            ring[(int) (latest % ring.length)] = null;
+            resetAt = latest;
+        }
+
+        QueueDelta get(long sequence) {
+            return ring[(int) (sequence % ring.length)];
+        }
+
+        long latest() {
+            return latest;
+        }
+
+        long oldest() {
+            return Math.max(1, latest - ring.length + 1);
+        }
+    }
+}
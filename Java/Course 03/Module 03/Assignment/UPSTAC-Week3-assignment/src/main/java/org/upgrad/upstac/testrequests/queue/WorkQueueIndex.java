@@ -0,0 +1,129 @@
+package org.upgrad.upstac.testrequests.queue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.events.TestRequestEventListener;
+import org.upgrad.upstac.testrequests.events.TestRequestTransitioned;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Request ids per status, held in memory so queue depth and "next N" never scan the table.
+ * Ids are ordered oldest first, which is the order the queues are worked in.
+ * COMPLETED is not indexed: it only grows and nobody works it as a queue.
+ *
+ * Changes arrive as committed transition events, so a rolled back claim never shows.
+ * Readers hydrate the ids they get and re-check the status, since the index may trail the database briefly.
+ */
+@Component
+public class WorkQueueIndex implements TestRequestEventListener {
+
+    private final Map<RequestStatus, LongSortedSet> queues = new EnumMap<>(RequestStatus.class);
+    private final Map<RequestStatus, ReadWriteLock> locks = new EnumMap<>(RequestStatus.class);
+
+    @Autowired
+    private TestRequestRepository testRequestRepository;
+
+    private static Logger logger = LoggerFactory.getLogger(WorkQueueIndex.class);
+
+    public WorkQueueIndex() {
+        for (RequestStatus status : RequestStatus.values()) {
+            if (isIndexed(status)) {
+                queues.put(status, new LongSortedSet());
+                locks.put(status, new ReentrantReadWriteLock());
+            }
+        }
+    }
+
+    public static boolean isIndexed(RequestStatus status) {
+        return status != RequestStatus.COMPLETED;
+    }
+
+    public void rebuild() {
+
+        for (RequestStatus status : queues.keySet()) {
+            List<Long> ids = testRequestRepository.findIdsByStatus(status);
+
+            ReadWriteLock lock = locks.get(status);
+            lock.writeLock().lock();
+            try {
+                LongSortedSet queue = queues.get(status);
+                queue.clear();
+                for (Long id : ids)
+                    queue.add(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Indexed " + ids.size() + " test requests in " + status);
+        }
+    }
+
+    // Applied on the committing thread, so a client that just claimed a request no longer sees it queued
+    @Override
+    public Delivery delivery() {
+        return Delivery.AFTER_COMMIT;
+    }
+
+    @Override
+    public void on(TestRequestTransitioned event) {
+        RequestStatus from = event.getFrom();
+        RequestStatus to = event.getTo();
+        long requestId = event.getRequestId();
+
+        if (null != from && isIndexed(from))
+            update(from, requestId, false);
+        if (isIndexed(to))
+            update(to, requestId, true);
+    }
+
+    public int count(RequestStatus status) {
+
+        if (isIndexed(status) == false)
+            throw new IllegalArgumentException(status + " is not indexed");
+
+        ReadWriteLock lock = locks.get(status);
+        lock.readLock().lock();
+        try {
+            return queues.get(status).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Up to limit ids in status after the cursor, oldest first
+    public long[] idsAfter(RequestStatus status, long after, int limit) {
+
+        if (isIndexed(status) == false)
+            throw new IllegalArgumentException(status + " is not indexed");
+
+        ReadWriteLock lock = locks.get(status);
+        lock.readLock().lock();
+        try {
+            return queues.get(status).after(after, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void update(RequestStatus status, long requestId, boolean add) {
+
+        ReadWriteLock lock = locks.get(status);
+        lock.writeLock().lock();
+        try {
+            if (add)
+                queues.get(status).add(requestId);
+            else
+                queues.get(status).remove(requestId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.upgrad.upstac.testrequests.stats;
+
+import lombok.Getter;
+
+/**
+ * Positivity of one pinCode over a window, next to the window before it.
+ * growth is the change in positivity rate between the two, in percentage points.
+ */
+@Getter
+public class Hotspot {
+
+    private final Integer pinCode;
+    private final long tested;
+    private final long positive;
+    private final double positivityRate;
+    private final long previousTested;
+    private final double previousPositivityRate;
+    private final double growth;
+
+    public Hotspot(Integer pinCode, long tested, long positive, long previousTested, long previousPositive) {
+        this.pinCode = pinCode;
+        this.tested = tested;
+        this.positive = positive;
+        this.positivityRate = percentOf(positive, tested);
+        this.previousTested = previousTested;
+        this.previousPositivityRate = percentOf(previousPositive, previousTested);
+        this.growth = positivityRate - previousPositivityRate;
+    }
+
+    private static double percentOf(long part, long whole) {
+        return (whole == 0) ? 0 : 100.0 * part / whole;
+    }
+}
@@ -0,0 +1,192 @@
+package org.upgrad.upstac.testrequests.stats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.events.TestRequestEventListener;
+import org.upgrad.upstac.testrequests.events.TestRequestTransitioned;
+import org.upgrad.upstac.testrequests.lab.LabResultRepository;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Positivity rate per pinCode over recent windows, from completed lab tests, without querying the database.
+ *
+ * Each pinCode keeps a ring of time buckets counting tests and positives, long enough to hold
+ * two of the longest window, so every window can be compared with the one before it.
+ * The rings are filled from the lab completion events, and rebuilt at startup in one pass over recent results.
+ */
+@Component
+public class PositivityHotspots implements TestRequestEventListener {
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    // Window as configured ("24h", "7d") to its length in buckets
+    private final Map<String, Integer> windows = new LinkedHashMap<>();
+
+    private final Map<Integer, Region> regions = new ConcurrentHashMap<>();
+
+    @Autowired
+    private LabResultRepository labResultRepository;
+
+    private static final Logger log = LoggerFactory.getLogger(PositivityHotspots.class);
+
+    // Highest positivity first; growth, then the number of tests, break ties
+    static final Comparator<Hotspot> HOTTEST_LAST = Comparator.comparingDouble(Hotspot::getPositivityRate)
+            .thenComparingDouble(Hotspot::getGrowth)
+            .thenComparingLong(Hotspot::getTested);
+
+    @Autowired
+    public PositivityHotspots(@Value("${upstac.hotspots.bucket:1h}") Duration bucket,
+                              @Value("${upstac.hotspots.windows:24h,7d}") List<String> windows) {
+
+        this.bucketMillis = bucket.toMillis();
+
+        int longest = 1;
+        for (String window : windows) {
+            int buckets = (int) Math.max(1, DurationStyle.detectAndParse(window.trim()).toMillis() / bucketMillis);
+            this.windows.put(window.trim(), buckets);
+            longest = Math.max(longest, buckets);
+        }
+        this.bucketCount = 2 * longest;
+    }
+
+    public Set<String> windows() {
+        return windows.keySet();
+    }
+
+    @Override
+    public void on(TestRequestTransitioned event) {
+
+        if (event.getTo() == RequestStatus.LAB_TEST_COMPLETED && null != event.getResult() && null != event.getPinCode())
+            record(event.getPinCode(), event.getResult(), event.getOccurredAt().toEpochMilli());
+    }
+
+    // The k pinCodes with the highest positivity over the window, among those with at least minTests tests in it
+    public List<Hotspot> top(String window, int k, int minTests) {
+
+        Integer span = windows.get(window);
+        if (null == span)
+            throw new AppException("Window should be one of " + windows.keySet());
+
+        long now = currentBucket();
+        PriorityQueue<Hotspot> hottest = new PriorityQueue<>(k + 1, HOTTEST_LAST);
+
+        regions.forEach((pinCode, region) -> {
+            long[] sums = region.sums(now, span);
+            if (sums[0] < Math.max(1, minTests))
+                return;
+
+            hottest.offer(new Hotspot(pinCode, sums[0], sums[1], sums[2], sums[3]));
+            if (hottest.size() > k)
+                hottest.poll();
+        });
+
+        List<Hotspot> result = new ArrayList<>(hottest);
+        result.sort(HOTTEST_LAST.reversed());
+        return result;
+    }
+
+    @Transactional(readOnly = true)
+    public void rebuild() {
+
+        regions.clear();
+
+        long since = (currentBucket() - bucketCount + 1) * bucketMillis;
+        LocalDate sinceDay = Instant.ofEpochMilli(since).atZone(ZoneId.systemDefault()).toLocalDate();
+
+        AtomicLong rows = new AtomicLong();
+        try (Stream<Object[]> results = labResultRepository.streamCompletedSince(sinceDay)) {
+            results.forEach(row -> {
+                record((Integer) row[0], (TestStatus) row[1], completedAt((Instant) row[2], (LocalDate) row[3]));
+                rows.incrementAndGet();
+            });
+        }
+        log.info("Rebuilt positivity windows for " + regions.size() + " pinCodes from " + rows.get() + " lab results");
+    }
+
+    void record(Integer pinCode, TestStatus result, long at) {
+
+        long bucket = at / bucketMillis;
+        if (bucket <= currentBucket() - bucketCount)
+            return;
+
+        regions.computeIfAbsent(pinCode, key -> new Region(bucketCount)).add(bucket, result == TestStatus.POSITIVE);
+    }
+
+    // Results from before completion times were recorded only have a day; they count from its start
+    private long completedAt(Instant happenedAt, LocalDate updatedOn) {
+        if (null != happenedAt)
+            return happenedAt.toEpochMilli();
+        return Math.min(System.currentTimeMillis(), updatedOn.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    private long currentBucket() {
+        return System.currentTimeMillis() / bucketMillis;
+    }
+
+    static class Region {
+
+        private final long[] bucketIds;
+        private final int[] tested;
+        private final int[] positive;
+
+        Region(int bucketCount) {
+            bucketIds = new long[bucketCount];
+            tested = new int[bucketCount];
+            positive = new int[bucketCount];
+            Arrays.fill(bucketIds, -1);
+        }
+
+        synchronized void add(long bucket, boolean isPositive) {
+
+            int slot = (int) (bucket % bucketIds.length);
+            if (bucketIds[slot] != bucket) {
+                // The slot already moved on to a later bucket, so this sample is too old to keep
+                if (bucketIds[slot] > bucket)
+                    return;
+                bucketIds[slot] = bucket;
+                tested[slot] = 0;
+                positive[slot] = 0;
+            }
+
+            tested[slot]++;
+            if (isPositive)
+                positive[slot]++;
+        }
+
+        // Tests and positives in the last span buckets, then in the span before: {tested, positive, previousTested, previousPositive}
+        synchronized long[] sums(long now, int span) {
+
+            long[] sums = new long[4];
+            for (int slot = 0; slot < bucketIds.length; slot++) {
+                if (bucketIds[slot] < 0)
+                    continue;
+
+                long age = Math.max(0, now - bucketIds[slot]);
+                if (age < span) {
+                    sums[0] += tested[slot];
+                    sums[1] += positive[slot];
+                } else if (age < 2L * span) {
+                    sums[2] += tested[slot];
+                    sums[3] += positive[slot];
+                }
+            }
+            return sums;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.upgrad.upstac.testrequests.stats;
+
+import lombok.Getter;
+
+/**
+ * How long requests spent in one pipeline stage over a recent window, in seconds.
+ * samples counts every request that left the stage since startup, not just within the window.
+ */
+@Getter
+public class StageTurnaround {
+
+    private final String stage;
+    private final String window;
+    private final long samples;
+    private final double p50Seconds;
+    private final double p90Seconds;
+    private final double p99Seconds;
+    private final double maxSeconds;
+
+    public StageTurnaround(String stage, String window, long samples, double p50Seconds, double p90Seconds,
+                           double p99Seconds, double maxSeconds) {
+        this.stage = stage;
+        this.window = window;
+        this.samples = samples;
+        this.p50Seconds = p50Seconds;
+        this.p90Seconds = p90Seconds;
+        this.p99Seconds = p99Seconds;
+        this.maxSeconds = maxSeconds;
+    }
+}
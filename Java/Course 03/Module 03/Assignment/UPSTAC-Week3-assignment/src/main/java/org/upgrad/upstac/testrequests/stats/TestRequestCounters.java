@@ -0,0 +1,175 @@
+package org.upgrad.upstac.testrequests.stats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.consultation.ConsultationRepository;
+import org.upgrad.upstac.testrequests.consultation.DoctorSuggestion;
+import org.upgrad.upstac.testrequests.events.TestRequestEventListener;
+import org.upgrad.upstac.testrequests.events.TestRequestTransitioned;
+import org.upgrad.upstac.testrequests.lab.LabResultRepository;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+import org.upgrad.upstac.users.models.Gender;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counts of test requests, kept in striped counters (LongAdder) moved by every transition,
+ * so the dashboard reads them without touching the database.
+ *
+ * The database stays the source of truth: counts are reset from group-by queries at startup and
+ * periodically after. A reset that overlaps an event is thrown away and run again, since the event
+ * may have landed between the queries and the reset; see {@link #reconcile()} for what remains.
+ */
+@Component
+public class TestRequestCounters implements TestRequestEventListener {
+
+    private final Map<RequestStatus, LongAdder> byStatus = countersFor(RequestStatus.class);
+    private final Map<TestStatus, LongAdder> byResult = countersFor(TestStatus.class);
+    private final Map<DoctorSuggestion, LongAdder> bySuggestion = countersFor(DoctorSuggestion.class);
+    private final Map<Gender, LongAdder> byGender = countersFor(Gender.class);
+    private final Map<Integer, LongAdder> byPinCode = new ConcurrentHashMap<>();
+
+    // Reconcile attempts before giving up on a busy moment and leaving the counts to the next run
+    static final int RECONCILE_ATTEMPTS = 3;
+
+    private volatile Instant reconciledAt;
+
+    // Bumped as each event starts being applied, so a reconcile can tell whether one overlapped it
+    private final AtomicLong applied = new AtomicLong();
+
+    @Autowired
+    private TestRequestRepository testRequestRepository;
+
+    @Autowired
+    private LabResultRepository labResultRepository;
+
+    @Autowired
+    private ConsultationRepository consultationRepository;
+
+    private static final Logger log = LoggerFactory.getLogger(TestRequestCounters.class);
+
+    // Applied on the committing thread, so counts move with the commits and not behind them
+    @Override
+    public Delivery delivery() {
+        return Delivery.AFTER_COMMIT;
+    }
+
+    @Override
+    public void on(TestRequestTransitioned event) {
+
+        applied.incrementAndGet();
+
+        if (null != event.getFrom())
+            byStatus.get(event.getFrom()).decrement();
+        byStatus.get(event.getTo()).increment();
+
+        if (null == event.getFrom()) {
+            if (null != event.getGender())
+                byGender.get(event.getGender()).increment();
+            if (null != event.getPinCode())
+                byPinCode.computeIfAbsent(event.getPinCode(), pinCode -> new LongAdder()).increment();
+        }
+
+        if (event.getTo() == RequestStatus.LAB_TEST_COMPLETED && null != event.getResult())
+            byResult.get(event.getResult()).increment();
+
+        if (event.getTo() == RequestStatus.COMPLETED && null != event.getSuggestion())
+            bySuggestion.get(event.getSuggestion()).increment();
+    }
+
+    public TestRequestStats snapshot() {
+
+        Map<RequestStatus, Long> statuses = sums(byStatus, new EnumMap<>(RequestStatus.class));
+        long total = 0;
+        for (Long count : statuses.values())
+            total += count;
+
+        return new TestRequestStats(total,
+                statuses,
+                sums(byResult, new EnumMap<>(TestStatus.class)),
+                sums(bySuggestion, new EnumMap<>(DoctorSuggestion.class)),
+                sums(byGender, new EnumMap<>(Gender.class)),
+                sums(byPinCode, new TreeMap<>()),
+                reconciledAt);
+    }
+
+    public long countOf(RequestStatus status) {
+        return byStatus.get(status).sum();
+    }
+
+    // Resets the counts from the database. An event applied between the queries and the reset would be
+    // overwritten, so a pass that overlapped any event is run again. What is left is an event committed
+    // before the queries but applied after the reset (the moment between a commit and its after-commit
+    // callback): it is counted twice until the next run.
+    @Scheduled(initialDelayString = "${upstac.stats.reconcile-ms:300000}", fixedDelayString = "${upstac.stats.reconcile-ms:300000}")
+    public void reconcile() {
+
+        for (int attempt = 1; attempt <= RECONCILE_ATTEMPTS; attempt++) {
+            long before = applied.get();
+            resetFromDatabase();
+            if (applied.get() == before) {
+                reconciledAt = Instant.now();
+                log.info("Reconciled test request counters: " + countOf(RequestStatus.INITIATED) + " initiated, "
+                        + countOf(RequestStatus.COMPLETED) + " completed");
+                return;
+            }
+        }
+        log.warn("Test request counters changed during every reconcile attempt; leaving them to the next run");
+    }
+
+    private void resetFromDatabase() {
+
+        List<Object[]> statuses = testRequestRepository.countByStatus();
+        List<Object[]> genders = testRequestRepository.countByGender();
+        List<Object[]> results = labResultRepository.countByResult();
+        List<Object[]> suggestions = consultationRepository.countBySuggestion();
+
+        Map<Integer, Long> pinCodes = new HashMap<>();
+        for (Object[] row : testRequestRepository.countByPinCode())
+            pinCodes.put((Integer) row[0], (Long) row[1]);
+
+        // All queries first, so the window in which an event can be overwritten is only the resets below
+        resetFrom(byStatus, statuses);
+        resetFrom(byGender, genders);
+        resetFrom(byResult, results);
+        resetFrom(bySuggestion, suggestions);
+        byPinCode.keySet().retainAll(pinCodes.keySet());
+        pinCodes.forEach((pinCode, count) -> set(byPinCode.computeIfAbsent(pinCode, key -> new LongAdder()), count));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> void resetFrom(Map<K, LongAdder> counters, List<Object[]> rows) {
+
+        Map<K, Long> counts = new HashMap<>();
+        for (Object[] row : rows)
+            if (null != row[0])
+                counts.put((K) row[0], (Long) row[1]);
+
+        counters.forEach((key, counter) -> set(counter, counts.getOrDefault(key, 0L)));
+    }
+
+    private static void set(LongAdder counter, long value) {
+        counter.add(value - counter.sum());
+    }
+
+    private static <K> Map<K, Long> sums(Map<K, LongAdder> counters, Map<K, Long> into) {
+        counters.forEach((key, counter) -> into.put(key, counter.sum()));
+        return into;
+    }
+
+    private static <E extends Enum<E>> Map<E, LongAdder> countersFor(Class<E> type) {
+        Map<E, LongAdder> counters = new EnumMap<>(type);
+        for (E key : type.getEnumConstants())
+            counters.put(key, new LongAdder());
+        return Collections.unmodifiableMap(counters);
+    }
+}
@@ -0,0 +1,38 @@
+package org.upgrad.upstac.testrequests.stats;
+
+import lombok.Getter;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.consultation.DoctorSuggestion;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+import org.upgrad.upstac.users.models.Gender;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Counts across all test requests, as served to the government dashboard.
+ * byResult counts completed lab tests and bySuggestion completed consultations.
+ */
+@Getter
+public class TestRequestStats {
+
+    private final long total;
+    private final Map<RequestStatus, Long> byStatus;
+    private final Map<TestStatus, Long> byResult;
+    private final Map<DoctorSuggestion, Long> bySuggestion;
+    private final Map<Gender, Long> byGender;
+    private final Map<Integer, Long> byPinCode;
+    private final Instant reconciledAt;
+
+    public TestRequestStats(long total, Map<RequestStatus, Long> byStatus, Map<TestStatus, Long> byResult,
+                            Map<DoctorSuggestion, Long> bySuggestion, Map<Gender, Long> byGender,
+                            Map<Integer, Long> byPinCode, Instant reconciledAt) {
+        this.total = total;
+        this.byStatus = byStatus;
+        this.byResult = byResult;
+        this.bySuggestion = bySuggestion;
+        this.byGender = byGender;
+        this.byPinCode = byPinCode;
+        this.reconciledAt = reconciledAt;
+    }
+}
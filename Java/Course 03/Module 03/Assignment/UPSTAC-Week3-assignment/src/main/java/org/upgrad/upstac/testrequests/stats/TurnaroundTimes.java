@@ -0,0 +1,108 @@
+package org.upgrad.upstac.testrequests.stats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.events.TestRequestEventListener;
+import org.upgrad.upstac.testrequests.events.TestRequestTransitioned;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent in each stage of the pipeline, recorded as each request leaves the stage.
+ *
+ * Each stage has one Micrometer timer per window ("upstac.turnaround", tagged stage and window).
+ * Their percentiles come from rotating HdrHistogram buffers that drop samples older than the window,
+ * so the numbers follow a surge as it moves from one stage to the next.
+ */
+@Component
+public class TurnaroundTimes implements TestRequestEventListener {
+
+    static final String METRIC = "upstac.turnaround";
+
+    static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    // A stage is named after the status a request waits in
+    static final Map<RequestStatus, String> STAGES = new EnumMap<>(RequestStatus.class);
+
+    static {
+        STAGES.put(RequestStatus.INITIATED, "awaiting-tester");
+        STAGES.put(RequestStatus.LAB_TEST_IN_PROGRESS, "lab-test");
+        STAGES.put(RequestStatus.LAB_TEST_COMPLETED, "awaiting-doctor");
+        STAGES.put(RequestStatus.DIAGNOSIS_IN_PROCESS, "consultation");
+    }
+
+    private final Map<RequestStatus, Map<String, Timer>> timers = new EnumMap<>(RequestStatus.class);
+
+    @Autowired
+    public TurnaroundTimes(MeterRegistry meterRegistry, @Value("${upstac.turnaround.windows:1h,24h}") List<Duration> windows) {
+
+        STAGES.forEach((status, stage) -> {
+            Map<String, Timer> byWindow = new LinkedHashMap<>();
+            for (Duration window : windows)
+                byWindow.put(labelOf(window), Timer.builder(METRIC)
+                        .description("Time test requests spend in a pipeline stage")
+                        .tag("stage", stage)
+                        .tag("window", labelOf(window))
+                        .publishPercentiles(PERCENTILES)
+                        .distributionStatisticExpiry(window)
+                        .distributionStatisticBufferLength(3)
+                        .register(meterRegistry));
+            timers.put(status, byWindow);
+        });
+    }
+
+    @Override
+    public void on(TestRequestTransitioned event) {
+
+        if (null == event.getFrom() || null == event.getFromSince())
+            return;
+
+        Map<String, Timer> byWindow = timers.get(event.getFrom());
+        if (null == byWindow)
+            return;
+
+        long millis = Math.max(0, Duration.between(event.getFromSince(), event.getOccurredAt()).toMillis());
+        for (Timer timer : byWindow.values())
+            timer.record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public List<StageTurnaround> snapshot() {
+
+        List<StageTurnaround> stages = new ArrayList<>();
+        timers.forEach((status, byWindow) -> byWindow.forEach((window, timer) -> {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            stages.add(new StageTurnaround(STAGES.get(status), window, timer.count(),
+                    percentile(snapshot, 0.5), percentile(snapshot, 0.9), percentile(snapshot, 0.99),
+                    snapshot.max(TimeUnit.SECONDS)));
+        }));
+        return stages;
+    }
+
+    private static double percentile(HistogramSnapshot snapshot, double percentile) {
+        for (ValueAtPercentile value : snapshot.percentileValues())
+            if (value.percentile() == percentile)
+                return value.value(TimeUnit.SECONDS);
+        return 0;
+    }
+
+    // 1h -> "1h", 15m -> "15m", 7d -> "168h"
+    static String labelOf(Duration window) {
+        if (window.toHours() > 0 && window.equals(Duration.ofHours(window.toHours())))
+            return window.toHours() + "h";
+        if (window.toMinutes() > 0 && window.equals(Duration.ofMinutes(window.toMinutes())))
+            return window.toMinutes() + "m";
+        return window.getSeconds() + "s";
+    }
+}
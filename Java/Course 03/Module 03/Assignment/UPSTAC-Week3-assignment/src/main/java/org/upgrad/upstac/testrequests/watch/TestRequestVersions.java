@@ -0,0 +1,121 @@
+package org.upgrad.upstac.testrequests.watch;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.events.TestRequestEventListener;
+import org.upgrad.upstac.testrequests.events.TestRequestTransitioned;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ETags for what citizens refresh while they wait: one request, and their list of requests.
+ *
+ * A request's ETag is its persisted version, remembered here for recently seen requests so a
+ * matching If-None-Match is answered without touching the database.
+ * A user's list ETag is the sequence number of the last transition of any of their requests.
+ * When a user is evicted, later lookups return the highest evicted stamp instead: never lower
+ * than their real one, so a stale list is never reported unchanged.
+ */
+@Component
+public class TestRequestVersions implements TestRequestEventListener {
+
+    // Sequence numbers restart with the process; the epoch keeps old list ETags from matching new ones
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Map<Long, Long> requestVersions;
+    private final Map<Long, Long> userStamps;
+    private long evictedStamp = 0;
+
+    @Autowired
+    private TestRequestRepository testRequestRepository;
+
+    @Autowired
+    public TestRequestVersions(@Value("${upstac.versions.cache-size:100000}") int cacheSize) {
+        this.requestVersions = new Lru<>(cacheSize);
+        this.userStamps = new Lru<Long, Long>(cacheSize) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                boolean evict = super.removeEldestEntry(eldest);
+                if (evict)
+                    evictedStamp = Math.max(evictedStamp, eldest.getValue());
+                return evict;
+            }
+        };
+    }
+
+    // Empty when there is no such request
+    public Optional<Long> versionOf(Long requestId) {
+
+        synchronized (requestVersions) {
+            Long version = requestVersions.get(requestId);
+            if (null != version)
+                return Optional.of(version);
+        }
+
+        Optional<Long> version = testRequestRepository.findVersionById(requestId);
+        version.ifPresent(found -> remember(requestId, found));
+        return version;
+    }
+
+    public void remember(Long requestId, long version) {
+        synchronized (requestVersions) {
+            // A slower reader must not put back a version older than one already recorded
+            Long known = requestVersions.get(requestId);
+            if (null == known || known < version)
+                requestVersions.put(requestId, version);
+        }
+    }
+
+    public static String eTagOf(Long requestId, long version) {
+        return "\"" + requestId + "." + version + "\"";
+    }
+
+    public String historyETagOf(Long userId) {
+        long stamp;
+        synchronized (userStamps) {
+            Long known = userStamps.get(userId);
+            stamp = (null == known) ? evictedStamp : known;
+        }
+        return "\"" + epoch + "." + userId + "." + stamp + "\"";
+    }
+
+    // Runs on the committing thread, so the user who made a change is never served the old ETag
+    @Override
+    public Delivery delivery() {
+        return Delivery.AFTER_COMMIT;
+    }
+
+    @Override
+    public void on(TestRequestTransitioned event) {
+
+        remember(event.getRequestId(), event.getVersion());
+
+        if (null != event.getCreatedById()) {
+            long stamp = sequence.incrementAndGet();
+            synchronized (userStamps) {
+                userStamps.merge(event.getCreatedById(), stamp, Math::max);
+            }
+        }
+    }
+
+    private static class Lru<K, V> extends LinkedHashMap<K, V> {
+
+        private final int capacity;
+
+        Lru(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = Math.max(1, capacity);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
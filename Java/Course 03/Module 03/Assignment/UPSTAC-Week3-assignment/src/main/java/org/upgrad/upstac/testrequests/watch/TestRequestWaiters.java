@@ -0,0 +1,96 @@
+package org.upgrad.upstac.testrequests.watch;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.upgrad.upstac.testrequests.TestRequestRepository;
+import org.upgrad.upstac.testrequests.events.TestRequestEventListener;
+import org.upgrad.upstac.testrequests.events.TestRequestTransitioned;
+import org.upgrad.upstac.testrequests.models.TestRequestDetail;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-poll for a change of one request: the call is parked off the servlet thread until the
+ * request moves past the version the client has, or the timeout passes (304).
+ * Waiters are woken from the transition events; each wake reads the request once for all of its waiters.
+ */
+@Component
+public class TestRequestWaiters implements TestRequestEventListener {
+
+    static final int MAX_TIMEOUT_SECONDS = 60;
+
+    private final Map<Long, Set<DeferredResult<ResponseEntity<TestRequestDetail>>>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    @Autowired
+    private TestRequestRepository testRequestRepository;
+
+    @Autowired
+    private TestRequestVersions testRequestVersions;
+
+    @Value("${upstac.waiters.max:10000}")
+    private int maxWaiters;
+
+    public DeferredResult<ResponseEntity<TestRequestDetail>> await(Long requestId, long version, int timeoutSeconds) {
+
+        long timeoutMillis = Math.max(1, Math.min(timeoutSeconds, MAX_TIMEOUT_SECONDS)) * 1000L;
+        DeferredResult<ResponseEntity<TestRequestDetail>> result = new DeferredResult<>(timeoutMillis,
+                () -> ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(TestRequestVersions.eTagOf(requestId, version)).build());
+
+        if (waiting.incrementAndGet() > maxWaiters) {
+            waiting.decrementAndGet();
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").build());
+            return result;
+        }
+
+        // Adding and removing both happen inside the map's per-key lock, so a set is only dropped
+        // once its last waiter is gone and a new waiter never lands in a set that was just dropped
+        waiters.compute(requestId, (id, forRequest) -> {
+            Set<DeferredResult<ResponseEntity<TestRequestDetail>>> set = (null == forRequest) ? ConcurrentHashMap.newKeySet() : forRequest;
+            set.add(result);
+            return set;
+        });
+        result.onCompletion(() -> {
+            waiters.computeIfPresent(requestId, (id, forRequest) -> {
+                forRequest.remove(result);
+                return forRequest.isEmpty() ? null : forRequest;
+            });
+            waiting.decrementAndGet();
+        });
+
+        // Checked after registering, so a change that lands in between still wakes this waiter
+        Optional<Long> current = testRequestVersions.versionOf(requestId);
+        if (!current.isPresent())
+            result.setResult(ResponseEntity.notFound().build());
+        else if (current.get() != version)
+            result.setResult(changed(requestId));
+
+        return result;
+    }
+
+    @Override
+    public void on(TestRequestTransitioned event) {
+
+        Set<DeferredResult<ResponseEntity<TestRequestDetail>>> forRequest = waiters.get(event.getRequestId());
+        if (null == forRequest || forRequest.isEmpty())
+            return;
+
+        ResponseEntity<TestRequestDetail> response = changed(event.getRequestId());
+        for (DeferredResult<ResponseEntity<TestRequestDetail>> result : forRequest)
+            result.setResult(response);
+    }
+
+    private ResponseEntity<TestRequestDetail> changed(Long requestId) {
+        return testRequestRepository.findDetailById(requestId)
+                .map(detail -> ResponseEntity.ok().eTag(TestRequestVersions.eTagOf(requestId, detail.getVersion())).body(detail))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -1,12 +1,15 @@
 package org.upgrad.upstac.users;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 import org.upgrad.upstac.users.models.Gender;
 import org.upgrad.upstac.users.models.AccountStatus;
 import org.upgrad.upstac.users.roles.Role;
+import org.upgrad.upstac.users.roles.UserRole;
 
 import javax.persistence.*;
 import java.time.LocalDate;
@@ -17,10 +20,13 @@ import java.util.Set;
 @Getter
 @Setter
 @ToString
+// A user reached through a lazy reference is a Hibernate proxy; its interceptor is not part of the JSON
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true)
@@ -68,33 +74,53 @@ public class User {
     @ManyToMany(fetch = FetchType.EAGER)
     private Set<Role> roles;
 
+    // Roles as UserRole bits, worked out from roles on first use; -1 until then
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile int roleMask = -1;
 
-    public boolean doesRoleIsDoctor() {
+    public void setRoles(Set<Role> roles) {
+        this.roles = roles;
+        this.roleMask = -1;
+    }
 
-        return doesUserHasRole("DOCTOR");
+    @JsonIgnore
+    public int getRoleMask() {
+        int mask = roleMask;
+        if (mask < 0) {
+            mask = UserRole.maskOf(roles);
+            roleMask = mask;
+        }
+        return mask;
+    }
+
+    public boolean hasRole(UserRole role) {
+        return role.isIn(getRoleMask());
+    }
 
 
+    public boolean doesRoleIsDoctor() {
+        return hasRole(UserRole.DOCTOR);
     }
 
     public boolean doesUserHasRole(String s) {
-        return roles.stream()
-                .filter(role -> {
-                    return role.getName().equalsIgnoreCase(s);
-                })
-                .findFirst()
-                .isPresent();
+        UserRole role = UserRole.fromName(s);
+        return null != role && hasRole(role);
     }
 
     public boolean doesRoleIsUser() {
-        return doesUserHasRole("USER");
+        return hasRole(UserRole.USER);
     }
 
     public boolean doesRoleIsAuthority() {
-        return doesUserHasRole("GOVERNMENT_AUTHORITY");
+        return hasRole(UserRole.GOVERNMENT_AUTHORITY);
     }
 
     public boolean doesRoleIsTester() {
-        return doesUserHasRole("TESTER");
+        return hasRole(UserRole.TESTER);
     }
 
     public Integer getAge(){
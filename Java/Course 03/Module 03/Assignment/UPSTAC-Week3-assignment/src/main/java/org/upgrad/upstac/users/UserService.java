@@ -3,13 +3,14 @@ package org.upgrad.upstac.users;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 import org.upgrad.upstac.auth.register.RegisterRequest;
+import org.upgrad.upstac.auth.revocation.TokenRevocationService;
 import org.upgrad.upstac.exception.AppException;
 import org.upgrad.upstac.users.models.AccountStatus;
 import org.upgrad.upstac.users.models.UpdateUserDetailRequest;
@@ -40,11 +41,16 @@ public class UserService {
     @Autowired
     private BCryptPasswordEncoder bCryptPasswordEncoder;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     private static final Logger log = LoggerFactory.getLogger(UserService.class);
 
 
 
-    @Cacheable("user")
+    // Every authenticated request resolves its user by name; entries are evicted by every method that changes one.
+    // Unknown names are not cached, so a name checked during registration can log in right after.
+    @Cacheable(value = "user", unless = "#result == null")
     public User findByUserName(String userName) {
 
         return userRepository.findByUserName(userName);
@@ -143,20 +149,32 @@ public class UserService {
 
     }
 
-    @CachePut(value = "user")
+    @CacheEvict(value = "user", key = "#result.userName")
     public User updateApprovalStatus(Long userId,AccountStatus status) {
         User user = userRepository.findById(userId).orElseThrow(() -> new AppException("Invalid User ID"));
 
-        return updateStatusAndSave(user, status);
+        return applyStatus(user, status);
 
     }
 
+    // The user passed in may be the instance held in the cache, so it is never changed in place:
+    // the entry goes first, and the change is made to a copy read from the database
+    @CacheEvict(value = "user", key = "#user.userName", beforeInvocation = true)
     public User updateStatusAndSave(User user, @NotNull AccountStatus status) {
+        return applyStatus(freshCopyOf(user), status);
+    }
+
+    private User applyStatus(User user, AccountStatus status) {
         user.setStatus(status);
-        return saveInDatabase(user);
+        User savedUser = saveInDatabase(user);
+
+        // Closed, deleted and rejected accounts lose the tokens they already hold
+        if (status != AccountStatus.APPROVED)
+            tokenRevocationService.revokeAllFor(savedUser.getUserName());
+
+        return savedUser;
     }
 
-    @CachePut(value = "user")
     public User saveInDatabase(User newUser) {
         try{
             return userRepository.save(newUser);
@@ -170,8 +188,11 @@ public class UserService {
 
     }
 
-    public User updateUserDetails(User user, UpdateUserDetailRequest updateUserDetailRequest) {
+    // Like updateStatusAndSave, changes a copy so a failed save leaves no unsaved values in the cache
+    @CacheEvict(value = "user", key = "#loggedInUser.userName", beforeInvocation = true)
+    public User updateUserDetails(User loggedInUser, UpdateUserDetailRequest updateUserDetailRequest) {
 
+        User user = freshCopyOf(loggedInUser);
 
 
         if(isNotEmptyOrNull(updateUserDetailRequest.getFirstName()))
@@ -195,6 +216,11 @@ public class UserService {
     }
 
 
+    private User freshCopyOf(User user) {
+        return userRepository.findById(user.getId()).orElseThrow(() -> new AppException("Invalid User ID"));
+    }
+
+
     public Set<Role> getRoleFor(UserRole userRole) {
         return getRolesForUser(roleService.findByRole(userRole));
     }
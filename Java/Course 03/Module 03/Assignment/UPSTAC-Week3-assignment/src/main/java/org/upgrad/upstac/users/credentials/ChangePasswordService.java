@@ -4,11 +4,15 @@ package org.upgrad.upstac.users.credentials;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
+import org.upgrad.upstac.auth.revocation.TokenRevocationService;
+import org.upgrad.upstac.exception.AppException;
 import org.upgrad.upstac.exception.ForbiddenException;
 import org.upgrad.upstac.users.User;
 import org.upgrad.upstac.users.UserRepository;
@@ -35,23 +39,35 @@ public class ChangePasswordService {
 
     private UserRepository userRepository;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
 
     private static final Logger log = LoggerFactory.getLogger(ChangePasswordService.class);
 
-    public void changePassword(User user, @Valid ChangePasswordRequest changePasswordRequest) {
+    // The user passed in may be the cached instance: the entry is dropped first and a copy is saved.
+    // Checking the old password caches the user again, so the entry is dropped once more after the save
+    @Caching(evict = {
+            @CacheEvict(value = "user", key = "#loggedInUser.userName", beforeInvocation = true),
+            @CacheEvict(value = "user", key = "#loggedInUser.userName")
+    })
+    public void changePassword(User loggedInUser, @Valid ChangePasswordRequest changePasswordRequest) {
 
 
         try {
             authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
-                            user.getUserName(),
+                            loggedInUser.getUserName(),
                             changePasswordRequest.getOldPassword()
                     )
             );
 
+            User user = userRepository.findById(loggedInUser.getId()).orElseThrow(() -> new AppException("Invalid User ID"));
+
             String changedPassword = changePasswordRequest.getPassword();
             user.setPassword(bCryptPasswordEncoder.encode(changedPassword));
             userRepository.save(user);
+            tokenRevocationService.revokeAllFor(user.getUserName());
 
         } catch (Exception e) {
             throw new ForbiddenException(e.getMessage());
@@ -0,0 +1,25 @@
+package org.upgrad.upstac.users.models;
+
+import lombok.Getter;
+
+/**
+ * The part of a user that other people's screens show: who created, tested, treated or changed something.
+ */
+@Getter
+public class UserSummary {
+
+    private final String userName;
+    private final String firstName;
+    private final String lastName;
+
+    private UserSummary(String userName, String firstName, String lastName) {
+        this.userName = userName;
+        this.firstName = firstName;
+        this.lastName = lastName;
+    }
+
+    // Null when the user was not joined, so a missing tester or doctor serializes as null
+    public static UserSummary of(String userName, String firstName, String lastName) {
+        return (null == userName) ? null : new UserSummary(userName, firstName, lastName);
+    }
+}
@@ -4,6 +4,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 @Service
@@ -13,12 +15,23 @@ public class RoleService {
     @Autowired
 	private RoleRepository roleRepository;
 
+    // The four role rows never change once created, so they are read once and served from here
+    private final Map<UserRole, Role> registry = new ConcurrentHashMap<>();
+
 
 
     public void saveRoleFor(UserRole userRole) {
         Role role = new Role();
         role.setName(userRole.name());
-        roleRepository.save(role);
+        registry.put(userRole, roleRepository.save(role));
+    }
+
+    public void loadRegistry() {
+        for (Role role : roleRepository.findAll()) {
+            UserRole userRole = UserRole.fromName(role.getName());
+            if (null != userRole)
+                registry.put(userRole, role);
+        }
     }
 
 
@@ -28,7 +41,13 @@ public class RoleService {
 
     public Role findByRole(UserRole userRole) {
 
-       return roleRepository.findByName(userRole.name());
+       Role role = registry.get(userRole);
+       if (null == role) {
+           role = roleRepository.findByName(userRole.name());
+           if (null != role)
+               registry.put(userRole, role);
+       }
+       return role;
     }
 
     public boolean shouldInitialize() {
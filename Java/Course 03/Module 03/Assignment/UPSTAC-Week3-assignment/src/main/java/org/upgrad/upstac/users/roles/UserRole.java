@@ -1,5 +1,50 @@
 package org.upgrad.upstac.users.roles;
 
+import java.util.Collection;
+
 public enum UserRole {
-    USER, TESTER, DOCTOR,GOVERNMENT_AUTHORITY
+    USER, TESTER, DOCTOR,GOVERNMENT_AUTHORITY;
+
+    public static final int ALL = (1 << values().length) - 1;
+
+    private static final UserRole[] VALUES = values();
+
+    // One bit per role; a user's roles are the OR of their bits
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    public boolean isIn(int mask) {
+        return (mask & bit()) != 0;
+    }
+
+    // Null for names that are not a role
+    public static UserRole fromName(String name) {
+        if (null == name)
+            return null;
+        for (UserRole role : VALUES)
+            if (role.name().equalsIgnoreCase(name))
+                return role;
+        return null;
+    }
+
+    public static int maskOf(Collection<Role> roles) {
+        int mask = 0;
+        if (null != roles)
+            for (Role role : roles) {
+                UserRole userRole = fromName(role.getName());
+                if (null != userRole)
+                    mask |= userRole.bit();
+            }
+        return mask;
+    }
+
+    public static UserRole[] valuesOf(int mask) {
+        UserRole[] roles = new UserRole[Integer.bitCount(mask & ALL)];
+        int i = 0;
+        for (UserRole role : VALUES)
+            if (role.isIn(mask))
+                roles[i++] = role;
+        return roles;
+    }
 }
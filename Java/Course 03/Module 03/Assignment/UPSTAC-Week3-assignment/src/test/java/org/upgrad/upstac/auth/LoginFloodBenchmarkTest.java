@@ -0,0 +1,103 @@
+package org.upgrad.upstac.auth;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.*;
+import org.upgrad.upstac.auth.models.LoginRequest;
+import org.upgrad.upstac.auth.models.LoginResponse;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Run with: mvn test -Dgroups=benchmark -DexcludedGroups=
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "upstac.login.max-attempts-per-address=100000000")
+class LoginFloodBenchmarkTest {
+
+    static final int SAMPLES = 200;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    public void when_logins_flood_in_expect_other_endpoints_latency_to_stay_flat(TestReporter testReporter) throws Exception {
+
+        //Arrange
+        HttpEntity<Void> authorized = new HttpEntity<>(bearer(login("user", "password").getBody().getToken()));
+        long[] baseline = timeHistoryRequests(authorized);
+
+        int flooders = Runtime.getRuntime().availableProcessors() * 4;
+        ExecutorService flood = Executors.newFixedThreadPool(flooders);
+        AtomicBoolean flooding = new AtomicBoolean(true);
+        AtomicInteger attempts = new AtomicInteger();
+        for (int i = 0; i < flooders; i++)
+            flood.submit(() -> {
+                // Unknown names cost a full BCrypt check too, and are never throttled per user
+                while (flooding.get())
+                    restTemplate.postForEntity("/auth/login", loginRequest("flood" + attempts.incrementAndGet(), "wrong"), String.class);
+            });
+
+        //Act
+        Thread.sleep(1000);
+        long[] underFlood = timeHistoryRequests(authorized);
+        flooding.set(false);
+        flood.shutdown();
+        flood.awaitTermination(30, TimeUnit.SECONDS);
+
+        //Assert
+        long baselineP95 = percentile(baseline, 95);
+        long floodP95 = percentile(underFlood, 95);
+        testReporter.publishEntry("login flood", "attempts " + attempts.get() + ", history p50/p95 ms baseline "
+                + percentile(baseline, 50) + "/" + baselineP95 + ", under flood " + percentile(underFlood, 50) + "/" + floodP95);
+
+        assertTrue(floodP95 <= Math.max(baselineP95 * 3, baselineP95 + 50),
+                "p95 went from " + baselineP95 + " ms to " + floodP95 + " ms");
+    }
+
+    private long[] timeHistoryRequests(HttpEntity<Void> authorized) {
+
+        long[] millis = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            ResponseEntity<String> response = restTemplate.exchange("/api/testrequests", HttpMethod.GET, authorized, String.class);
+            millis[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+        }
+        return millis;
+    }
+
+    private ResponseEntity<LoginResponse> login(String userName, String password) {
+        return restTemplate.postForEntity("/auth/login", loginRequest(userName, password), LoginResponse.class);
+    }
+
+    private static LoginRequest loginRequest(String userName, String password) {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setUserName(userName);
+        loginRequest.setPassword(password);
+        return loginRequest;
+    }
+
+    private static HttpHeaders bearer(String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        return headers;
+    }
+
+    private static long percentile(long[] samples, int percentile) {
+        long[] sorted = Arrays.copyOf(samples, samples.length);
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+}
@@ -0,0 +1,41 @@
+package org.upgrad.upstac.auth.revocation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    public void when_names_added_expect_every_one_of_them_found() {
+
+        //Arrange
+        BloomFilter filter = new BloomFilter(1 << 12);
+
+        //Act
+        for (int i = 0; i < 200; i++)
+            filter.add("user" + i);
+
+        //Assert
+        for (int i = 0; i < 200; i++)
+            assertTrue(filter.mightContain("user" + i));
+    }
+
+    @Test
+    public void when_names_never_added_expect_few_false_positives() {
+
+        //Arrange
+        BloomFilter filter = new BloomFilter(1 << 16);
+        for (int i = 0; i < 1000; i++)
+            filter.add("revoked" + i);
+
+        //Act
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++)
+            if (filter.mightContain("active" + i))
+                falsePositives++;
+
+        //Assert
+        assertTrue(falsePositives < 100, "false positives: " + falsePositives);
+    }
+}
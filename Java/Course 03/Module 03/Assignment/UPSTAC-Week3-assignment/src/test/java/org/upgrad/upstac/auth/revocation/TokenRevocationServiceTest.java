@@ -0,0 +1,151 @@
+package org.upgrad.upstac.auth.revocation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.upgrad.upstac.config.security.TokenProvider;
+import org.upgrad.upstac.config.security.VerifiedToken;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    static final long TOKEN_LIFETIME_MILLIS = TokenProvider.JWT_TOKEN_VALIDITY * 1000;
+
+    @Mock
+    RevokedUserRepository revokedUserRepository;
+
+    TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    public void setUp() {
+        tokenRevocationService = serviceLoadedWith(Collections.emptyList());
+    }
+
+    @Test
+    public void when_a_user_is_revoked_expect_only_their_tokens_from_before_rejected() {
+
+        //Arrange
+        VerifiedToken before = tokenFor("alice", tokenRevocationService.currentEpoch());
+        VerifiedToken otherUser = tokenFor("bob", tokenRevocationService.currentEpoch());
+
+        //Act
+        tokenRevocationService.revokeAllFor("alice");
+        VerifiedToken after = tokenFor("alice", tokenRevocationService.currentEpoch());
+
+        //Assert
+        assertTrue(tokenRevocationService.isRevoked(before));
+        assertFalse(tokenRevocationService.isRevoked(after));
+        assertFalse(tokenRevocationService.isRevoked(otherUser));
+    }
+
+    @Test
+    public void when_revoked_twice_in_quick_succession_expect_a_login_between_them_rejected() {
+
+        //Arrange
+        tokenRevocationService.revokeAllFor("alice");
+        VerifiedToken between = tokenFor("alice", tokenRevocationService.currentEpoch());
+
+        //Act
+        tokenRevocationService.revokeAllFor("alice");
+
+        //Assert
+
+        //Epochs move on with every revocation, even within the same millisecond
+        assertTrue(tokenRevocationService.isRevoked(between));
+        assertFalse(tokenRevocationService.isRevoked(tokenFor("alice", tokenRevocationService.currentEpoch())));
+    }
+
+    @Test
+    public void when_a_token_has_no_epoch_expect_it_rejected_once_its_user_is_revoked() {
+
+        //Arrange
+        VerifiedToken withoutEpoch = tokenFor("alice", 0L);
+        assertFalse(tokenRevocationService.isRevoked(withoutEpoch));
+
+        //Act
+        tokenRevocationService.revokeAllFor("alice");
+
+        //Assert
+        assertTrue(tokenRevocationService.isRevoked(withoutEpoch));
+    }
+
+    @Test
+    public void when_restarted_expect_revocations_reloaded_and_new_logins_accepted() {
+
+        //Arrange
+        VerifiedToken before = tokenFor("alice", tokenRevocationService.currentEpoch());
+        tokenRevocationService.revokeAllFor("alice");
+        ArgumentCaptor<RevokedUser> saved = ArgumentCaptor.forClass(RevokedUser.class);
+        Mockito.verify(revokedUserRepository).save(saved.capture());
+
+        //Act
+        TokenRevocationService restarted = serviceLoadedWith(Collections.singletonList(saved.getValue()));
+
+        //Assert
+        assertTrue(restarted.isRevoked(before));
+        assertFalse(restarted.isRevoked(tokenFor("alice", restarted.currentEpoch())));
+        assertTrue(restarted.currentEpoch() >= saved.getValue().getEpoch());
+    }
+
+    @Test
+    public void when_revocations_outlive_every_token_expect_them_purged_and_later_ones_kept() {
+
+        //Arrange
+        long expired = System.currentTimeMillis() - TOKEN_LIFETIME_MILLIS - 60_000;
+        TokenRevocationService service = serviceLoadedWith(Arrays.asList(revoked("alice", expired), revoked("bob", System.currentTimeMillis())));
+        VerifiedToken alice = tokenFor("alice", expired - 1);
+        VerifiedToken bob = tokenFor("bob", expired - 1);
+        Mockito.clearInvocations(revokedUserRepository);
+
+        //Act
+        service.revokeAllFor("carol");
+        VerifiedToken carol = tokenFor("carol", expired);
+        service.purgeExpired();
+
+        //Assert
+        assertFalse(service.isRevoked(alice));
+        assertTrue(service.isRevoked(bob));
+
+        //Made after the load's purge, so it has to be in the rebuilt filter
+        assertTrue(service.isRevoked(carol));
+        Mockito.verify(revokedUserRepository).purgeRevokedBefore(anyLong());
+    }
+
+    private TokenRevocationService serviceLoadedWith(List<RevokedUser> rows) {
+
+        Mockito.lenient().when(revokedUserRepository.findAll()).thenReturn(rows);
+        Mockito.lenient().when(revokedUserRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        TokenRevocationService service = new TokenRevocationService();
+        ReflectionTestUtils.setField(service, "revokedUserRepository", revokedUserRepository);
+        ReflectionTestUtils.setField(service, "bloomBits", 1 << 12);
+        service.load();
+        return service;
+    }
+
+    private static RevokedUser revoked(String userName, long at) {
+        RevokedUser revokedUser = new RevokedUser();
+        revokedUser.setUserName(userName);
+        revokedUser.setRevokedAt(at);
+        revokedUser.setEpoch(at);
+        return revokedUser;
+    }
+
+    private static VerifiedToken tokenFor(String userName, long revocationEpoch) {
+        long now = System.currentTimeMillis();
+        return new VerifiedToken(userName, null, null, Collections.emptyList(), now, now + TOKEN_LIFETIME_MILLIS, revocationEpoch);
+    }
+}
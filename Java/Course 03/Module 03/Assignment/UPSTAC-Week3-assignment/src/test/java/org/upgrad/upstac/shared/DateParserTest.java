@@ -0,0 +1,53 @@
+package org.upgrad.upstac.shared;
+
+import org.junit.jupiter.api.Test;
+import org.upgrad.upstac.exception.AppException;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DateParserTest {
+
+    @Test
+    public void when_iso_or_unpadded_date_given_expect_same_local_date() {
+
+        //Act
+        LocalDate iso = DateParser.getDateFromString("1990-06-15");
+        LocalDate unpadded = DateParser.getDateFromString("1990-6-5");
+
+        //Assert
+        assertEquals(LocalDate.of(1990, 6, 15), iso);
+        assertEquals(LocalDate.of(1990, 6, 5), unpadded);
+    }
+
+    @Test
+    public void when_invalid_or_impossible_date_given_expect_empty_result_without_exception() {
+
+        //Act
+        Optional<LocalDate> malformed = DateParser.tryParse("15/06/1990");
+        Optional<LocalDate> impossible = DateParser.tryParse("2021-02-30");
+        Optional<LocalDate> missing = DateParser.tryParse(null);
+
+        //Assert
+        assertFalse(malformed.isPresent());
+        assertFalse(impossible.isPresent());
+        assertFalse(missing.isPresent());
+        assertThrows(AppException.class, () -> DateParser.getDateFromString("2021-02-30"));
+    }
+
+    @Test
+    public void when_date_formatted_expect_it_to_parse_back() {
+
+        //Arrange
+        LocalDate date = LocalDate.of(2005, 1, 9);
+
+        //Act
+        String text = DateParser.getStringFromDate(date);
+
+        //Assert
+        assertEquals("2005-01-09", text);
+        assertEquals(date, DateParser.getDateFromString(text));
+    }
+}
@@ -30,6 +30,9 @@ class ConsultationControllerTest {
     @Autowired
     TestRequestQueryService testRequestQueryService;
 
+    @Autowired
+    TestRequestFixtures testRequestFixtures;
+
     @Autowired
     TestRequestUpdateService testRequestUpdateService;
 
@@ -59,7 +62,7 @@ class ConsultationControllerTest {
     }
 
     public TestRequest getTestRequestByStatus(RequestStatus status) {
-        return testRequestQueryService.findBy(status).stream().findFirst().get();
+        return testRequestFixtures.oneIn(status);
     }
 
     @Test
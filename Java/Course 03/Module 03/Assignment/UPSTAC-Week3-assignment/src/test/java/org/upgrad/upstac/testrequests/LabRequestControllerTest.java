@@ -26,6 +26,9 @@ class LabRequestControllerTest {
     @Autowired
     TestRequestQueryService testRequestQueryService;
 
+    @Autowired
+    TestRequestFixtures testRequestFixtures;
+
     @Test
     @WithUserDetails(value = "tester")
     public void calling_assignForLabTest_with_valid_test_request_id_should_update_the_request_status(){
@@ -52,7 +55,7 @@ class LabRequestControllerTest {
     }
 
     public TestRequest getTestRequestByStatus(RequestStatus status) {
-        return testRequestQueryService.findBy(status).stream().findFirst().get();
+        return testRequestFixtures.oneIn(status);
     }
 
     @Test
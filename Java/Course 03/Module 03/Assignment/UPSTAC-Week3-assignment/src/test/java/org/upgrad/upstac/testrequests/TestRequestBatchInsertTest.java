@@ -0,0 +1,70 @@
+package org.upgrad.upstac.testrequests;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import org.upgrad.upstac.users.models.Gender;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class TestRequestBatchInsertTest {
+
+    static final int ROWS = 200;
+
+    @Autowired
+    TestRequestRepository testRequestRepository;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Test
+    public void saving_many_test_requests_should_take_a_few_batched_statements_instead_of_one_per_row(){
+
+        //Arrange
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        List<TestRequest> testRequests = createTestRequests();
+        statistics.clear();
+
+        //Act
+        testRequestRepository.saveAll(testRequests);
+        entityManager.flush();
+
+        //Assert
+
+        //Every row was inserted
+        assertEquals(ROWS, statistics.getEntityInsertCount());
+
+        //200 rows go out as 4 batches of 50, with one sequence call per 50 ids
+        assertThat(statistics.getPrepareStatementCount(), lessThan(20L));
+
+    }
+
+    public List<TestRequest> createTestRequests() {
+        List<TestRequest> testRequests = new ArrayList<>();
+
+        for (int i = 0; i < ROWS; i++) {
+            TestRequest testRequest = new TestRequest();
+            testRequest.setName("batchuser" + i);
+            testRequest.setCreated(LocalDate.now());
+            testRequest.setStatus(RequestStatus.INITIATED);
+            testRequest.setAge(30);
+            testRequest.setGender(Gender.FEMALE);
+            testRequest.setPinCode(560003);
+            testRequests.add(testRequest);
+        }
+        return testRequests;
+    }
+}
@@ -0,0 +1,108 @@
+package org.upgrad.upstac.testrequests;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.upgrad.upstac.exception.ConflictException;
+import org.upgrad.upstac.testrequests.lab.LabResultRepository;
+import org.upgrad.upstac.users.User;
+import org.upgrad.upstac.users.UserService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class TestRequestClaimTest {
+
+    static final int ROUNDS = 5;
+
+    @Autowired
+    TestRequestFixtures testRequestFixtures;
+
+    @Autowired
+    TestRequestUpdateService testRequestUpdateService;
+
+    @Autowired
+    TestRequestQueryService testRequestQueryService;
+
+    @Autowired
+    LabResultRepository labResultRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Test
+    public void when_two_testers_claim_the_same_request_at_once_expect_one_lab_result_and_one_conflict() throws Exception {
+
+        //Arrange
+        User tester = userService.findByUserName("tester");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                Long id = testRequestFixtures.createIn(RequestStatus.INITIATED);
+                CountDownLatch start = new CountDownLatch(1);
+                Callable<TestRequest> claim = () -> {
+                    start.await();
+                    return testRequestUpdateService.assignForLabTest(id, tester);
+                };
+
+                //Act
+                List<Future<TestRequest>> claims = new ArrayList<>();
+                claims.add(executor.submit(claim));
+                claims.add(executor.submit(claim));
+                start.countDown();
+
+                //Assert
+                int claimed = 0;
+                int conflicts = 0;
+                for (Future<TestRequest> future : claims) {
+                    try {
+                        future.get();
+                        claimed++;
+                    } catch (ExecutionException e) {
+                        assertTrue(e.getCause() instanceof ConflictException, "unexpected " + e.getCause());
+                        conflicts++;
+                    }
+                }
+
+                assertEquals(1, claimed);
+                assertEquals(1, conflicts);
+                assertEquals(RequestStatus.LAB_TEST_IN_PROGRESS, testRequestQueryService.getTestRequestById(id).get().getStatus());
+                assertEquals(1, labResultRepository.findAll().stream()
+                        .filter(labResult -> id.equals(labResult.getRequest().getRequestId()))
+                        .count());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void when_a_request_has_already_left_the_status_expect_a_conflict_and_no_second_lab_result() {
+
+        //Arrange
+        User tester = userService.findByUserName("tester");
+        Long id = testRequestFixtures.createIn(RequestStatus.LAB_TEST_IN_PROGRESS);
+
+        //Act
+        ConflictException conflict = assertThrows(ConflictException.class,
+                () -> testRequestUpdateService.assignForLabTest(id, tester));
+
+        //Assert
+        assertTrue(conflict.getMessage().contains(id.toString()));
+        assertEquals(1, labResultRepository.findAll().stream()
+                .filter(labResult -> id.equals(labResult.getRequest().getRequestId()))
+                .count());
+    }
+}
@@ -7,18 +7,29 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 import org.upgrad.upstac.config.security.UserLoggedInService;
 import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.exception.ConflictException;
+import org.upgrad.upstac.shared.BulkRowOutcome;
+import org.upgrad.upstac.testrequests.models.TestRequestDetail;
+import org.upgrad.upstac.testrequests.watch.TestRequestWaiters;
 import org.upgrad.upstac.users.User;
 import org.upgrad.upstac.users.models.Gender;
 
 import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 
 import static org.hibernate.validator.internal.util.Contracts.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 
 @ExtendWith(MockitoExtension.class)
 class TestRequestControllerTest {
@@ -32,6 +43,12 @@ class TestRequestControllerTest {
     @Mock
     UserLoggedInService userLoggedInService;
 
+    @Mock
+    TestRequestQueryService testRequestQueryService;
+
+    @Mock
+    TestRequestWaiters testRequestWaiters;
+
     @Test
     public void when_testRequestCreateService_createTestRequestFrom_returns_valid_expect_same_as_response(){
 
@@ -75,6 +92,76 @@ class TestRequestControllerTest {
 
     }
 
+    @Test
+    public void when_a_bulk_create_loses_a_contact_race_expect_it_run_again_and_the_later_outcome_returned() {
+
+        //Arrange
+        User user = createUser();
+        List<BulkRowOutcome> outcomes = Collections.singletonList(BulkRowOutcome.accepted(1, 10L));
+        Mockito.when(userLoggedInService.getLoggedInUser()).thenReturn(user);
+        Mockito.when(testRequestService.createTestRequestsFrom(any(), anyList()))
+                .thenThrow(new ConflictException("A Request with same PhoneNumber or Email is already in progress"))
+                .thenReturn(outcomes);
+
+        //Act
+        List<BulkRowOutcome> result = testRequestController.createRequests(Collections.singletonList(createTestRequest()));
+
+        //Assert
+        assertSame(outcomes, result);
+        Mockito.verify(testRequestService, Mockito.times(2)).createTestRequestsFrom(any(), anyList());
+    }
+
+    @Test
+    public void when_every_bulk_create_attempt_conflicts_expect_conflict_after_the_last_attempt() {
+
+        //Arrange
+        Mockito.when(userLoggedInService.getLoggedInUser()).thenReturn(createUser());
+        Mockito.when(testRequestService.createTestRequestsFrom(any(), anyList()))
+                .thenThrow(new ConflictException("A Request with same PhoneNumber or Email is already in progress"));
+
+        //Act
+        ResponseStatusException result = assertThrows(ResponseStatusException.class,
+                () -> testRequestController.createRequests(Collections.singletonList(createTestRequest())));
+
+        //Assert
+        assertEquals(HttpStatus.CONFLICT, result.getStatus());
+        Mockito.verify(testRequestService, Mockito.times(TestRequestController.BULK_ATTEMPTS)).createTestRequestsFrom(any(), anyList());
+    }
+
+    @Test
+    public void when_awaiting_a_request_the_caller_may_not_see_expect_not_found_and_no_waiter() {
+
+        //Arrange
+        User user = createUser();
+        Mockito.when(userLoggedInService.getLoggedInUser()).thenReturn(user);
+        Mockito.when(testRequestQueryService.findTestRequestForUserByID(user, 7L)).thenReturn(Optional.empty());
+
+        //Act
+        DeferredResult<ResponseEntity<TestRequestDetail>> result = testRequestController.awaitChange(7L, 0L, 30);
+
+        //Assert
+        assertEquals(HttpStatus.NOT_FOUND, ((ResponseEntity<?>) result.getResult()).getStatusCode());
+        Mockito.verifyNoInteractions(testRequestWaiters);
+    }
+
+    @Test
+    public void when_awaiting_a_request_the_caller_may_see_expect_a_waiter_for_it() {
+
+        //Arrange
+        User user = createUser();
+        DeferredResult<ResponseEntity<TestRequestDetail>> waiting = new DeferredResult<>();
+        Mockito.when(userLoggedInService.getLoggedInUser()).thenReturn(user);
+        Mockito.when(testRequestQueryService.findTestRequestForUserByID(user, 7L))
+                .thenReturn(Optional.of(getMockedResponseFrom(createTestRequest())));
+        Mockito.when(testRequestWaiters.await(7L, 2L, 30)).thenReturn(waiting);
+
+        //Act
+        DeferredResult<ResponseEntity<TestRequestDetail>> result = testRequestController.awaitChange(7L, 2L, 30);
+
+        //Assert
+        assertSame(waiting, result);
+    }
+
     public CreateTestRequest createTestRequest() {
         CreateTestRequest createTestRequest = new CreateTestRequest();
         createTestRequest.setAddress("some Addres");
@@ -7,17 +7,25 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.shared.BulkRowOutcome;
+import org.upgrad.upstac.testrequests.active.ActiveTestRequest;
+import org.upgrad.upstac.testrequests.active.ActiveTestRequestRegistry;
+import org.upgrad.upstac.testrequests.events.TestRequestEventBus;
 import org.upgrad.upstac.users.User;
 import org.upgrad.upstac.users.models.Gender;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 
 @ExtendWith(MockitoExtension.class)
 class TestRequestCreateServiceTest {
@@ -25,6 +33,11 @@ class TestRequestCreateServiceTest {
     @Mock
     TestRequestRepository testRequestRepository;
 
+    @Mock
+    ActiveTestRequestRegistry activeTestRequestRegistry;
+
+    @Mock
+    TestRequestEventBus testRequestEventBus;
 
     @InjectMocks
     TestRequestService testRequestService;
@@ -46,15 +59,14 @@ class TestRequestCreateServiceTest {
 
 
         //Mock
-        //testRequestRepository.findByEmailOrPhoneNumber
-        //returns  List<TestRequest>
+        //activeTestRequestRegistry.isActive
+        //returns  false
 
-        List<TestRequest> existingTestRequests = new ArrayList<>();
-        Mockito.when(testRequestRepository.findByEmailOrPhoneNumber(createTestRequest.getEmail(),createTestRequest.getPhoneNumber())).thenReturn(existingTestRequests);
+        Mockito.when(activeTestRequestRegistry.isActive(createTestRequest.getEmail(),createTestRequest.getPhoneNumber())).thenReturn(false);
 
         //testRequestRepository.save
         //return TestRequest
-        //Mockito.when(testRequestRepository.save(mockedResponse)).thenReturn(mockedResponse);
+        Mockito.when(testRequestRepository.save(any())).thenReturn(mockedResponse);
 
         //Act
         // Call createTestRequestFrom
@@ -69,6 +81,7 @@ class TestRequestCreateServiceTest {
         //Assert
 
         Mockito.verify(testRequestRepository).save(any());
+        Mockito.verify(activeTestRequestRegistry).register(any());
 
     }
 
@@ -90,11 +103,10 @@ class TestRequestCreateServiceTest {
 
 
         //Mock
-        //testRequestRepository.findByEmailOrPhoneNumber
-            //returns  List<TestRequest>
+        //activeTestRequestRegistry.isActive
+            //returns  true
 
-        List<TestRequest> existingTestRequests = getExistingTestRequests();
-        Mockito.when(testRequestRepository.findByEmailOrPhoneNumber(createTestRequest.getEmail(),createTestRequest.getPhoneNumber())).thenReturn(existingTestRequests);
+        Mockito.when(activeTestRequestRegistry.isActive(createTestRequest.getEmail(),createTestRequest.getPhoneNumber())).thenReturn(true);
         //testRequestRepository.save
         //return TestRequest
 
@@ -117,6 +129,85 @@ class TestRequestCreateServiceTest {
 
     }
 
+    @Test
+    public void when_a_bulk_upload_repeats_a_contact_expect_only_its_first_row_created() {
+
+        //Arrange
+        User user = createUser();
+        List<TestRequest> saved = mockSaveAllGivingIds();
+        Mockito.when(activeTestRequestRegistry.findByContacts(anyCollection(), anyCollection())).thenReturn(Collections.emptyList());
+        CreateTestRequest first = createTestRequest("first@somedomain.com", "111111111");
+        CreateTestRequest sameEmail = createTestRequest(" First@SomeDomain.com", "222222222");
+        CreateTestRequest other = createTestRequest("other@somedomain.com", "333333333");
+
+        //Act
+        List<BulkRowOutcome> outcomes = testRequestService.createTestRequestsFrom(user, Arrays.asList(first, sameEmail, other));
+
+        //Assert
+        assertEquals(3, outcomes.size());
+        assertAccepted(outcomes.get(0), 1, saved.get(0).getRequestId());
+        assertFalse(outcomes.get(1).isAccepted());
+        assertEquals(2, outcomes.get(1).getLine());
+        assertThat(outcomes.get(1).getMessage(), containsString("already in progress"));
+        assertAccepted(outcomes.get(2), 3, saved.get(1).getRequestId());
+        assertEquals(2, saved.size());
+        Mockito.verify(activeTestRequestRegistry).register(saved);
+        Mockito.verify(testRequestEventBus, Mockito.times(2)).publish(any());
+    }
+
+    @Test
+    public void when_a_bulk_row_matches_a_request_already_in_progress_expect_that_row_rejected_and_the_rest_created() {
+
+        //Arrange
+        User user = createUser();
+        List<TestRequest> saved = mockSaveAllGivingIds();
+        ActiveTestRequest active = new ActiveTestRequest();
+        active.setRequestId(99L);
+        active.setPhoneNumber("111111111");
+        Mockito.when(activeTestRequestRegistry.findByContacts(anyCollection(), anyCollection())).thenReturn(Collections.singletonList(active));
+        CreateTestRequest inProgress = createTestRequest("first@somedomain.com", " 111111111 ");
+        CreateTestRequest other = createTestRequest("other@somedomain.com", "333333333");
+
+        //Act
+        List<BulkRowOutcome> outcomes = testRequestService.createTestRequestsFrom(user, Arrays.asList(inProgress, other));
+
+        //Assert
+        assertFalse(outcomes.get(0).isAccepted());
+        assertNull(outcomes.get(0).getRequestId());
+        assertThat(outcomes.get(0).getMessage(), containsString("already in progress"));
+        assertAccepted(outcomes.get(1), 2, saved.get(0).getRequestId());
+        assertEquals(1, saved.size());
+        assertEquals("other@somedomain.com", saved.get(0).getEmail());
+    }
+
+    // saveAll hands back what it was given, with ids as the insert would have set them
+    private List<TestRequest> mockSaveAllGivingIds() {
+
+        List<TestRequest> saved = new ArrayList<>();
+        Mockito.when(testRequestRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<TestRequest> testRequests = invocation.getArgument(0);
+            for (TestRequest testRequest : testRequests) {
+                testRequest.setRequestId(100L + saved.size());
+                saved.add(testRequest);
+            }
+            return saved;
+        });
+        return saved;
+    }
+
+    private static void assertAccepted(BulkRowOutcome outcome, long line, Long requestId) {
+        assertTrue(outcome.isAccepted());
+        assertEquals(line, outcome.getLine());
+        assertEquals(requestId, outcome.getRequestId());
+    }
+
+    private CreateTestRequest createTestRequest(String email, String phoneNumber) {
+        CreateTestRequest createTestRequest = createTestRequest();
+        createTestRequest.setEmail(email);
+        createTestRequest.setPhoneNumber(phoneNumber);
+        return createTestRequest;
+    }
+
     public CreateTestRequest createTestRequest() {
         CreateTestRequest createTestRequest = new CreateTestRequest();
         createTestRequest.setAddress("some Addres");
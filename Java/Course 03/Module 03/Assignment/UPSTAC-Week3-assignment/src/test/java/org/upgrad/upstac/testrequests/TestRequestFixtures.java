@@ -0,0 +1,80 @@
+package org.upgrad.upstac.testrequests;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.upgrad.upstac.testrequests.lab.CreateLabResult;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+import org.upgrad.upstac.users.UserService;
+import org.upgrad.upstac.users.models.Gender;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Walks a fresh test request through the workflow when the database has none in the status a test needs
+@Component
+class TestRequestFixtures {
+
+    private static final AtomicInteger sequence = new AtomicInteger();
+
+    @Autowired
+    TestRequestQueryService testRequestQueryService;
+
+    @Autowired
+    TestRequestService testRequestService;
+
+    @Autowired
+    TestRequestUpdateService testRequestUpdateService;
+
+    @Autowired
+    UserService userService;
+
+    public TestRequest oneIn(RequestStatus status) {
+
+        if (testRequestQueryService.findBy(status).isEmpty())
+            createIn(status);
+
+        return testRequestQueryService.findBy(status).stream().findFirst().get();
+    }
+
+    // A request no other test has seen, for tests that race on it or change it
+    public Long createIn(RequestStatus status) {
+
+        Long id = testRequestService.createTestRequestFrom(userService.findByUserName("user"), createTestRequest()).getRequestId();
+        if (status == RequestStatus.INITIATED)
+            return id;
+
+        testRequestUpdateService.assignForLabTest(id, userService.findByUserName("tester"));
+        if (status == RequestStatus.LAB_TEST_IN_PROGRESS)
+            return id;
+
+        testRequestUpdateService.updateLabTest(id, createLabResult(), userService.findByUserName("tester"));
+        if (status == RequestStatus.LAB_TEST_COMPLETED)
+            return id;
+
+        testRequestUpdateService.assignForConsultation(id, userService.findByUserName("doctor"));
+        return id;
+    }
+
+    private static CreateTestRequest createTestRequest() {
+        int n = sequence.incrementAndGet();
+        CreateTestRequest createTestRequest = new CreateTestRequest();
+        createTestRequest.setName("fixture" + n);
+        createTestRequest.setGender(Gender.MALE);
+        createTestRequest.setAddress("some Addres");
+        createTestRequest.setAge(98);
+        createTestRequest.setEmail("fixture" + n + System.nanoTime() + "@upgrad.com");
+        createTestRequest.setPhoneNumber(String.valueOf(8000000000L + System.nanoTime() % 1000000000L));
+        createTestRequest.setPinCode(716768);
+        return createTestRequest;
+    }
+
+    private static CreateLabResult createLabResult() {
+        CreateLabResult labResult = new CreateLabResult();
+        labResult.setComments("Taken all relevant data");
+        labResult.setBloodPressure("170");
+        labResult.setHeartBeat("90");
+        labResult.setTemperature("100");
+        labResult.setOxygenLevel("99");
+        labResult.setResult(TestStatus.NEGATIVE);
+        return labResult;
+    }
+}
@@ -0,0 +1,84 @@
+package org.upgrad.upstac.testrequests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.upgrad.upstac.testrequests.events.TestRequestEventBus;
+import org.upgrad.upstac.testrequests.lab.BulkLabResult;
+import org.upgrad.upstac.testrequests.lab.LabResult;
+import org.upgrad.upstac.testrequests.lab.LabResultService;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+import org.upgrad.upstac.users.User;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+
+@ExtendWith(MockitoExtension.class)
+class TestRequestUpdateServiceTest {
+
+    @Mock
+    TestRequestRepository testRequestRepository;
+
+    @Mock
+    TestRequestEventBus testRequestEventBus;
+
+    @Mock
+    LabResultService labResultService;
+
+    @InjectMocks
+    TestRequestUpdateService testRequestUpdateService;
+
+    @Test
+    public void when_a_chunk_has_the_same_request_id_twice_expect_only_the_first_applied() {
+
+        //Arrange
+        TestRequest testRequest = inProgressRequest(5L);
+        Mockito.when(testRequestRepository.findByRequestIdInAndStatus(anyCollection(), eq(RequestStatus.LAB_TEST_IN_PROGRESS)))
+                .thenReturn(Collections.singletonList(testRequest));
+        List<BulkLabResult> rows = Arrays.asList(row(5L, TestStatus.NEGATIVE), row(5L, TestStatus.POSITIVE), row(6L, TestStatus.NEGATIVE));
+
+        //Act
+        List<String> errors = testRequestUpdateService.updateLabTests(rows, createUser());
+
+        //Assert
+        assertEquals(Arrays.asList(null, BulkLabResult.DUPLICATE_REQUEST_ID, BulkLabResult.INVALID_ID_OR_STATE), errors);
+        assertEquals(RequestStatus.LAB_TEST_COMPLETED, testRequest.getStatus());
+        Mockito.verify(labResultService).applyLabTest(testRequest.getLabResult(), rows.get(0));
+        Mockito.verify(labResultService, Mockito.never()).applyLabTest(any(), eq(rows.get(1)));
+        Mockito.verify(testRequestEventBus, Mockito.times(1)).publish(any());
+    }
+
+    private static TestRequest inProgressRequest(Long id) {
+        TestRequest testRequest = new TestRequest();
+        testRequest.setRequestId(id);
+        testRequest.setStatus(RequestStatus.LAB_TEST_IN_PROGRESS);
+        testRequest.setLabResult(new LabResult());
+        return testRequest;
+    }
+
+    private static BulkLabResult row(Long requestId, TestStatus result) {
+        BulkLabResult row = new BulkLabResult();
+        row.setRequestId(requestId);
+        row.setBloodPressure("120");
+        row.setHeartBeat("80");
+        row.setTemperature("98");
+        row.setResult(result);
+        return row;
+    }
+
+    private static User createUser() {
+        User user = new User();
+        user.setId(1L);
+        user.setUserName("tester");
+        return user;
+    }
+}
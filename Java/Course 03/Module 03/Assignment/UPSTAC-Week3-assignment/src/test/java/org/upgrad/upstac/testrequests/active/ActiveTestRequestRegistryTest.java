@@ -0,0 +1,98 @@
+package org.upgrad.upstac.testrequests.active;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.DataException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.upgrad.upstac.exception.ConflictException;
+import org.upgrad.upstac.testrequests.TestRequest;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class ActiveTestRequestRegistryTest {
+
+    @Mock
+    EntityManager entityManager;
+
+    @Mock
+    ActiveTestRequestRepository activeTestRequestRepository;
+
+    @InjectMocks
+    ActiveTestRequestRegistry activeTestRequestRegistry;
+
+    @Test
+    public void when_contacts_differ_only_in_case_or_surrounding_spaces_expect_the_same_key() {
+
+        //Act
+        String key = ActiveTestRequestRegistry.asKey("  SomeOne@SomeDomain.COM ");
+
+        //Assert
+        assertEquals("someone@somedomain.com", key);
+        assertEquals(key, ActiveTestRequestRegistry.asKey("someone@somedomain.com"));
+        assertNull(ActiveTestRequestRegistry.asKey("   "));
+        assertNull(ActiveTestRequestRegistry.asKey(null));
+    }
+
+    @Test
+    public void when_a_contact_is_checked_expect_the_probe_made_with_its_key() {
+
+        //Arrange
+        Mockito.when(activeTestRequestRepository.existsByEmail("someone@somedomain.com")).thenReturn(true);
+
+        //Act
+        boolean active = activeTestRequestRegistry.isActive(" SomeOne@SomeDomain.com", " ");
+
+        //Assert
+        assertTrue(active);
+    }
+
+    @Test
+    public void when_registering_breaks_a_unique_column_expect_a_conflict() {
+
+        //Arrange
+        PersistenceException duplicate = new PersistenceException(
+                new ConstraintViolationException("Duplicate entry", new SQLException("Duplicate entry"), "UK_EMAIL"));
+        Mockito.doNothing().doThrow(duplicate).when(entityManager).flush();
+
+        //Act
+        ConflictException result = assertThrows(ConflictException.class,
+                () -> activeTestRequestRegistry.register(Collections.singletonList(createTestRequest())));
+
+        //Assert
+        assertSame(duplicate, result.getCause());
+    }
+
+    @Test
+    public void when_registering_fails_for_another_reason_expect_the_failure_rethrown_as_it_is() {
+
+        //Arrange
+        PersistenceException tooLong = new PersistenceException(
+                new DataException("Data too long for column", new SQLException("Data too long for column")));
+        Mockito.doNothing().doThrow(tooLong).when(entityManager).flush();
+
+        //Act
+        PersistenceException result = assertThrows(PersistenceException.class,
+                () -> activeTestRequestRegistry.register(Collections.singletonList(createTestRequest())));
+
+        //Assert
+        assertSame(tooLong, result);
+    }
+
+    private static TestRequest createTestRequest() {
+        TestRequest testRequest = new TestRequest();
+        testRequest.setRequestId(1L);
+        testRequest.setEmail(" SomeOne@SomeDomain.com");
+        testRequest.setPhoneNumber("123456789");
+        return testRequest;
+    }
+}
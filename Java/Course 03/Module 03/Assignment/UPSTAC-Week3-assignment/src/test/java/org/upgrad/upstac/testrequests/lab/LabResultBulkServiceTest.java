@@ -0,0 +1,209 @@
+package org.upgrad.upstac.testrequests.lab;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.upgrad.upstac.testrequests.TestRequestUpdateService;
+import org.upgrad.upstac.users.User;
+
+import javax.validation.Validation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+
+@ExtendWith(MockitoExtension.class)
+class LabResultBulkServiceTest {
+
+    static final String HEADER = "requestId,bloodPressure,heartBeat,temperature,oxygenLevel,comments,result";
+
+    @Mock
+    TestRequestUpdateService testRequestUpdateService;
+
+    LabResultBulkService labResultBulkService;
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    User tester = new User();
+
+    @BeforeEach
+    public void setUp() {
+        labResultBulkService = new LabResultBulkService();
+        ReflectionTestUtils.setField(labResultBulkService, "testRequestUpdateService", testRequestUpdateService);
+        ReflectionTestUtils.setField(labResultBulkService, "validator", Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(labResultBulkService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(labResultBulkService, "chunkSize", 2);
+    }
+
+    @Test
+    public void when_csv_values_are_quoted_expect_commas_and_doubled_quotes_kept_inside_the_value() {
+
+        //Arrange
+        String line = "1, \"120/80, sitting\" ,\"said \"\"fine\"\"\",,last";
+
+        //Act
+        String[] values = LabResultBulkService.splitCsvLine(line);
+
+        //Assert
+        assertArrayEquals(new String[]{"1", "120/80, sitting", "said \"fine\"", "", "last"}, values);
+    }
+
+    @Test
+    public void when_a_quote_is_left_open_expect_the_row_rejected_as_unreadable() throws IOException {
+
+        //Arrange
+        mockAllApplied();
+        String upload = HEADER + "\n"
+                + "1,120,80,98,99,\"spans\n"
+                + "two lines\",NEGATIVE\n";
+
+        //Act
+        List<JsonNode> outcomes = upload(upload);
+
+        //Assert
+        assertEquals(2, outcomes.size());
+        assertRejected(outcomes.get(0), 2, BulkLabResult.UNREADABLE_ROW);
+        assertRejected(outcomes.get(1), 3, BulkLabResult.UNREADABLE_ROW);
+        Mockito.verifyNoInteractions(testRequestUpdateService);
+    }
+
+    @Test
+    public void when_the_header_has_a_byte_order_mark_and_other_case_expect_rows_read_by_column_name() throws IOException {
+
+        //Arrange
+        List<List<BulkLabResult>> chunks = mockAllApplied();
+        String upload = "\uFEFFRESULT,RequestID,bloodpressure,HeartBeat,Temperature\n"
+                + "positive,7,120,80,98\n";
+
+        //Act
+        List<JsonNode> outcomes = upload(upload);
+
+        //Assert
+        assertEquals(1, outcomes.size());
+        assertTrue(outcomes.get(0).get("accepted").asBoolean());
+        BulkLabResult row = chunks.get(0).get(0);
+        assertEquals(7L, row.getRequestId());
+        assertEquals(TestStatus.POSITIVE, row.getResult());
+        assertEquals("120", row.getBloodPressure());
+        assertEquals("80", row.getHeartBeat());
+        assertEquals("98", row.getTemperature());
+    }
+
+    @Test
+    public void when_result_is_not_a_test_status_expect_only_that_row_rejected() throws IOException {
+
+        //Arrange
+        mockAllApplied();
+        String upload = HEADER + "\n"
+                + "1,120,80,98,99,ok,MAYBE\n"
+                + "2,120,80,98,99,ok,NEGATIVE\n";
+
+        //Act
+        List<JsonNode> outcomes = upload(upload);
+
+        //Assert
+        assertEquals(2, outcomes.size());
+        assertRejected(outcomes.get(0), 2, BulkLabResult.UNREADABLE_ROW);
+        assertTrue(outcomes.get(1).get("accepted").asBoolean());
+        assertEquals(2L, outcomes.get(1).get("requestId").asLong());
+    }
+
+    @Test
+    public void when_required_fields_are_missing_expect_their_names_in_a_fixed_code() throws IOException {
+
+        //Arrange
+        String upload = HEADER + "\n"
+                + "1,,80,98,99,ok,\n";
+
+        //Act
+        List<JsonNode> outcomes = upload(upload);
+
+        //Assert
+        assertRejected(outcomes.get(0), 2, BulkLabResult.INVALID_FIELDS + ": bloodPressure, result");
+        Mockito.verifyNoInteractions(testRequestUpdateService);
+    }
+
+    @Test
+    public void when_the_update_service_reports_row_errors_expect_them_against_their_lines() throws IOException {
+
+        //Arrange
+        Mockito.when(testRequestUpdateService.updateLabTests(anyList(), any()))
+                .thenReturn(Arrays.asList(null, BulkLabResult.DUPLICATE_REQUEST_ID));
+        String upload = HEADER + "\n"
+                + "5,120,80,98,99,ok,NEGATIVE\n"
+                + "5,120,80,98,99,ok,POSITIVE\n";
+
+        //Act
+        List<JsonNode> outcomes = upload(upload);
+
+        //Assert
+        assertTrue(outcomes.get(0).get("accepted").asBoolean());
+        assertRejected(outcomes.get(1), 3, BulkLabResult.DUPLICATE_REQUEST_ID);
+    }
+
+    @Test
+    public void when_a_chunk_fails_expect_its_rows_chunk_failed_and_later_chunks_still_applied() throws IOException {
+
+        //Arrange
+        Mockito.when(testRequestUpdateService.updateLabTests(anyList(), any()))
+                .thenThrow(new IllegalStateException("connection reset"))
+                .thenReturn(Collections.singletonList(null));
+        String upload = HEADER + "\n"
+                + "1,120,80,98,99,ok,NEGATIVE\n"
+                + "2,120,80,98,99,ok,NEGATIVE\n"
+                + "3,120,80,98,99,ok,NEGATIVE\n";
+
+        //Act
+        List<JsonNode> outcomes = upload(upload);
+
+        //Assert
+        assertEquals(3, outcomes.size());
+        assertRejected(outcomes.get(0), 2, BulkLabResult.CHUNK_FAILED);
+        assertRejected(outcomes.get(1), 3, BulkLabResult.CHUNK_FAILED);
+        assertTrue(outcomes.get(2).get("accepted").asBoolean());
+        Mockito.verify(testRequestUpdateService, Mockito.times(2)).updateLabTests(anyList(), any());
+    }
+
+    private List<List<BulkLabResult>> mockAllApplied() {
+
+        List<List<BulkLabResult>> chunks = new ArrayList<>();
+        Mockito.lenient().when(testRequestUpdateService.updateLabTests(anyList(), any())).thenAnswer(invocation -> {
+            List<BulkLabResult> chunk = invocation.getArgument(0);
+            chunks.add(new ArrayList<>(chunk));
+            return Collections.nCopies(chunk.size(), null);
+        });
+        return chunks;
+    }
+
+    private List<JsonNode> upload(String upload) throws IOException {
+
+        StringWriter output = new StringWriter();
+        labResultBulkService.updateLabTests(new BufferedReader(new StringReader(upload)), true, tester, output);
+
+        List<JsonNode> outcomes = new ArrayList<>();
+        for (String line : output.toString().split("\n"))
+            if (line.isEmpty() == false)
+                outcomes.add(objectMapper.readTree(line));
+        return outcomes;
+    }
+
+    private static void assertRejected(JsonNode outcome, long line, String message) {
+        assertFalse(outcome.get("accepted").asBoolean());
+        assertEquals(line, outcome.get("line").asLong());
+        assertEquals(message, outcome.get("message").asText());
+    }
+}
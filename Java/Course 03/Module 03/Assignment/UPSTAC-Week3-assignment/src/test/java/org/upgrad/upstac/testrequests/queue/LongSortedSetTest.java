@@ -0,0 +1,104 @@
+package org.upgrad.upstac.testrequests.queue;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongSortedSetTest {
+
+    @Test
+    public void when_ids_added_out_of_order_expect_them_listed_oldest_first() {
+
+        //Arrange
+        LongSortedSet set = new LongSortedSet();
+
+        //Act
+        set.add(5L);
+        set.add(1L);
+        set.add(3L);
+        boolean addedAgain = set.add(3L);
+
+        //Assert
+        assertFalse(addedAgain);
+        assertEquals(3, set.size());
+        assertArrayEquals(new long[]{1L, 3L, 5L}, set.after(0L, 10));
+    }
+
+    @Test
+    public void when_page_requested_after_cursor_expect_only_later_ids_up_to_limit() {
+
+        //Arrange
+        LongSortedSet set = new LongSortedSet();
+        for (long id = 1; id <= 10; id++)
+            set.add(id * 10);
+
+        //Act
+        long[] page = set.after(35L, 3);
+
+        //Assert
+        assertArrayEquals(new long[]{40L, 50L, 60L}, page);
+        assertEquals(0, set.after(100L, 3).length);
+    }
+
+    @Test
+    public void when_oldest_ids_removed_while_new_ones_arrive_expect_set_to_stay_consistent() {
+
+        //Arrange
+        LongSortedSet set = new LongSortedSet();
+
+        //Act
+        // Claims take the head while creates append at the tail, well past the initial capacity
+        for (long id = 1; id <= 1000; id++) {
+            set.add(id);
+            if (id % 2 == 0)
+                assertTrue(set.remove(id / 2));
+        }
+        boolean removedMissing = set.remove(1L);
+
+        //Assert
+        assertFalse(removedMissing);
+        assertEquals(500, set.size());
+        assertArrayEquals(new long[]{501L, 502L}, set.after(0L, 2));
+        assertTrue(set.remove(750L));
+        assertArrayEquals(new long[]{749L, 751L}, set.after(748L, 2));
+    }
+
+    @Test
+    public void when_full_array_with_claimed_head_gets_a_middle_insert_expect_order_kept() {
+
+        //Arrange
+        // Fill all 64 slots, then claim from the head: 40 claims compact on the next insert, 1 claim grows
+        LongSortedSet compacting = fullSetWithClaims(40);
+        LongSortedSet growing = fullSetWithClaims(1);
+
+        //Act
+        boolean addedWhenCompacting = compacting.add(101L);
+        boolean addedWhenGrowing = growing.add(101L);
+
+        //Assert
+        assertTrue(addedWhenCompacting);
+        assertTrue(addedWhenGrowing);
+        assertSortedAndDistinct(compacting, 25);
+        assertSortedAndDistinct(growing, 64);
+        assertArrayEquals(new long[]{100L, 101L, 102L}, compacting.after(98L, 3));
+        assertArrayEquals(new long[]{100L, 101L, 102L}, growing.after(98L, 3));
+        assertFalse(compacting.add(101L));
+    }
+
+    private static LongSortedSet fullSetWithClaims(int claims) {
+        LongSortedSet set = new LongSortedSet();
+        for (long id = 1; id <= 64; id++)
+            set.add(id * 2);
+        for (long id = 1; id <= claims; id++)
+            set.remove(id * 2);
+        return set;
+    }
+
+    private static void assertSortedAndDistinct(LongSortedSet set, int expectedSize) {
+        long[] all = set.after(Long.MIN_VALUE, Integer.MAX_VALUE);
+        assertEquals(expectedSize, all.length);
+        assertEquals(expectedSize, set.size());
+        for (int i = 1; i < all.length; i++)
+            assertTrue(all[i - 1] < all[i], "out of order at " + i);
+    }
+}
@@ -0,0 +1,249 @@
+package org.upgrad.upstac.testrequests.queue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.upgrad.upstac.testrequests.RequestStatus;
+import org.upgrad.upstac.testrequests.TestRequest;
+import org.upgrad.upstac.testrequests.events.TestRequestTransitioned;
+import org.upgrad.upstac.users.User;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueFeedTest {
+
+    QueueFeed queueFeed;
+
+    RecordingEmitter nextEmitter;
+
+    @AfterEach
+    public void tearDown() {
+        queueFeed.shutdown();
+    }
+
+    @Test
+    public void when_a_client_resumes_from_an_id_still_in_the_ring_expect_only_the_deltas_after_it() throws Exception {
+
+        //Arrange
+        createFeed(10, 10);
+        RecordingEmitter first = subscribe(null);
+        assertEquals(QueueFeed.READY, first.next().name);
+        claim(1L);
+        claim(2L);
+        claim(3L);
+        String seenFirst = first.next().id;
+
+        //Act
+        RecordingEmitter resumed = subscribe(seenFirst);
+
+        //Assert
+        assertRemoved(resumed.next(), 2L);
+        assertRemoved(resumed.next(), 3L);
+        assertNull(resumed.nextIfAny());
+    }
+
+    @Test
+    public void when_a_client_resumes_with_an_id_of_another_process_expect_a_reset() throws Exception {
+
+        //Arrange
+        createFeed(10, 10);
+        claim(1L);
+
+        //Act
+        RecordingEmitter resumed = subscribe("kb1x2c3-1");
+
+        //Assert
+        assertEquals(QueueFeed.RESET, resumed.next().name);
+        assertNull(resumed.nextIfAny());
+    }
+
+    @Test
+    public void when_a_client_resumes_from_before_the_ring_expect_a_reset() throws Exception {
+
+        //Arrange
+        createFeed(3, 10);
+        String beforeAny = subscribe(null).next().id;
+        for (long id = 1; id <= 6; id++)
+            claim(id);
+
+        //Act
+        RecordingEmitter resumed = subscribe(beforeAny);
+
+        //Assert
+        Sent reset = resumed.next();
+        assertEquals(QueueFeed.RESET, reset.name);
+        assertEquals(idAt(beforeAny, 6), reset.id);
+        assertNull(resumed.nextIfAny());
+    }
+
+    @Test
+    public void when_a_client_missed_more_than_its_buffer_holds_expect_a_reset_instead_of_the_deltas() throws Exception {
+
+        //Arrange
+        createFeed(100, 2);
+        String beforeAny = subscribe(null).next().id;
+        for (long id = 1; id <= 5; id++)
+            claim(id);
+
+        //Act
+        RecordingEmitter resumed = subscribe(beforeAny);
+
+        //Assert
+        assertEquals(QueueFeed.RESET, resumed.next().name);
+        assertNull(resumed.nextIfAny());
+    }
+
+    @Test
+    public void when_a_client_falls_behind_by_more_than_its_buffer_expect_it_disconnected() throws Exception {
+
+        //Arrange
+        createFeed(100, 2);
+        RecordingEmitter slow = new RecordingEmitter();
+        slow.sendGate = new CountDownLatch(1);
+        nextEmitter = slow;
+        queueFeed.subscribe(RequestStatus.INITIATED, null);
+        assertTrue(slow.sending.await(5, TimeUnit.SECONDS));
+
+        //Act
+
+        //The sender is stuck writing the ready event while three deltas arrive for a buffer of two
+        claim(1L);
+        claim(2L);
+        claim(3L);
+        slow.sendGate.countDown();
+
+        //Assert
+        assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(QueueFeed.READY, slow.next().name);
+        claim(4L);
+        assertNull(slow.nextIfAny());
+    }
+
+    @Test
+    public void when_events_were_dropped_expect_clients_reset_and_ids_from_before_it_not_resumable() throws Exception {
+
+        //Arrange
+        createFeed(10, 10);
+        RecordingEmitter connected = subscribe(null);
+        connected.next();
+        claim(1L);
+        String beforeReset = connected.next().id;
+
+        //Act
+        queueFeed.onMissed();
+
+        //Assert
+        Sent reset = connected.next();
+        assertEquals(QueueFeed.RESET, reset.name);
+        assertEquals(QueueFeed.RESET, subscribe(beforeReset).next().name);
+        assertNull(subscribe(reset.id).nextIfAny());
+    }
+
+    private void createFeed(int replaySize, int clientBuffer) {
+        queueFeed = new QueueFeed(replaySize, clientBuffer, 1) {
+            @Override
+            SseEmitter newEmitter() {
+                return nextEmitter;
+            }
+        };
+    }
+
+    private RecordingEmitter subscribe(String lastEventId) {
+        nextEmitter = new RecordingEmitter();
+        queueFeed.subscribe(RequestStatus.INITIATED, lastEventId);
+        return nextEmitter;
+    }
+
+    // A tester took the request, so it leaves the INITIATED queue
+    private void claim(Long requestId) {
+        TestRequest testRequest = new TestRequest();
+        testRequest.setRequestId(requestId);
+        User tester = new User();
+        tester.setId(1L);
+        queueFeed.on(TestRequestTransitioned.of(testRequest, RequestStatus.INITIATED, RequestStatus.LAB_TEST_IN_PROGRESS, tester));
+    }
+
+    private static String idAt(String eventId, long sequence) {
+        return eventId.substring(0, eventId.lastIndexOf('-') + 1) + sequence;
+    }
+
+    private static void assertRemoved(Sent sent, Long requestId) {
+        assertEquals(QueueFeed.DELTA, sent.name);
+        QueueDelta delta = (QueueDelta) sent.data;
+        assertEquals(QueueDelta.Type.REMOVED, delta.getType());
+        assertEquals(requestId, delta.getRequestId());
+    }
+
+    static class Sent {
+
+        String name;
+        String id;
+        Object data;
+    }
+
+    // Records each event instead of writing it to a response
+    static class RecordingEmitter extends SseEmitter {
+
+        final BlockingQueue<Sent> sent = new LinkedBlockingQueue<>();
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile CountDownLatch sendGate;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                if (null != sendGate)
+                    sendGate.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            sent.add(parse(builder.build()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+        }
+
+        Sent next() throws InterruptedException {
+            Sent next = sent.poll(5, TimeUnit.SECONDS);
+            assertNotNull(next, "Nothing was sent");
+            return next;
+        }
+
+        Sent nextIfAny() throws InterruptedException {
+            return sent.poll(200, TimeUnit.MILLISECONDS);
+        }
+
+        // The builder gives the event's text lines, with the data as a separate part after "data:"
+        private static Sent parse(Set<ResponseBodyEmitter.DataWithMediaType> parts) {
+            Sent event = new Sent();
+            boolean dataNext = false;
+            for (ResponseBodyEmitter.DataWithMediaType part : parts) {
+                if (dataNext) {
+                    event.data = part.getData();
+                    dataNext = false;
+                    continue;
+                }
+                String text = part.getData().toString();
+                for (String line : text.split("\n")) {
+                    if (line.startsWith("event:"))
+                        event.name = line.substring("event:".length());
+                    else if (line.startsWith("id:"))
+                        event.id = line.substring("id:".length());
+                }
+                dataNext = text.endsWith("data:");
+            }
+            return event;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.upgrad.upstac.testrequests.stats;
+
+import org.junit.jupiter.api.Test;
+import org.upgrad.upstac.testrequests.lab.TestStatus;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositivityHotspotsTest {
+
+    static final long HOUR = Duration.ofHours(1).toMillis();
+
+    @Test
+    public void when_results_recorded_expect_highest_positivity_first_and_small_samples_left_out() {
+
+        //Arrange
+        PositivityHotspots hotspots = new PositivityHotspots(Duration.ofHours(1), Arrays.asList("24h", "7d"));
+        long now = System.currentTimeMillis();
+        record(hotspots, 500001, now, 10, 5);
+        record(hotspots, 500002, now, 10, 8);
+        record(hotspots, 500003, now, 2, 2);
+
+        //Act
+        List<Hotspot> top = hotspots.top("24h", 5, 5);
+
+        //Assert
+        assertEquals(2, top.size());
+        assertEquals(500002, top.get(0).getPinCode());
+        assertEquals(80.0, top.get(0).getPositivityRate(), 0.001);
+        assertEquals(500001, top.get(1).getPinCode());
+    }
+
+    @Test
+    public void when_positivity_rises_expect_growth_against_previous_window() {
+
+        //Arrange
+        PositivityHotspots hotspots = new PositivityHotspots(Duration.ofHours(1), Arrays.asList("24h", "7d"));
+        long now = System.currentTimeMillis();
+        record(hotspots, 600001, now - 30 * HOUR, 10, 1);
+        record(hotspots, 600001, now, 10, 4);
+
+        //Act
+        Hotspot hotspot = hotspots.top("24h", 1, 1).get(0);
+
+        //Assert
+        assertEquals(10, hotspot.getTested());
+        assertEquals(10, hotspot.getPreviousTested());
+        assertEquals(30.0, hotspot.getGrowth(), 0.001);
+        assertEquals(20, hotspots.top("7d", 1, 1).get(0).getTested());
+    }
+
+    private static void record(PositivityHotspots hotspots, int pinCode, long at, int tested, int positive) {
+        for (int i = 0; i < tested; i++)
+            hotspots.record(pinCode, i < positive ? TestStatus.POSITIVE : TestStatus.NEGATIVE, at);
+    }
+}
@@ -0,0 +1,135 @@
+package org.upgrad.upstac.users;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.upgrad.upstac.auth.register.RegisterRequest;
+import org.upgrad.upstac.exception.AppException;
+import org.upgrad.upstac.users.credentials.ChangePasswordRequest;
+import org.upgrad.upstac.users.credentials.ChangePasswordService;
+import org.upgrad.upstac.users.models.AccountStatus;
+import org.upgrad.upstac.users.models.UpdateUserDetailRequest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.upgrad.upstac.config.loaddata.AppInitializationService.createRegisterRequestWith;
+
+@SpringBootTest
+class UserCacheTest {
+
+    private static final AtomicInteger sequence = new AtomicInteger();
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    ChangePasswordService changePasswordService;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Test
+    public void when_user_details_are_updated_expect_the_entry_evicted_and_the_cached_user_unchanged() {
+
+        //Arrange
+        User cached = cachedUser(userService.addUser(newRegistration()).getUserName());
+        String firstName = cached.getFirstName();
+        UpdateUserDetailRequest request = new UpdateUserDetailRequest();
+        request.setFirstName("Changed");
+
+        //Act
+        userService.updateUserDetails(cached, request);
+
+        //Assert
+        assertNull(userCache().get(cached.getUserName()));
+        assertEquals(firstName, cached.getFirstName());
+        assertEquals("Changed", userService.findByUserName(cached.getUserName()).getFirstName());
+    }
+
+    @Test
+    public void when_an_update_fails_expect_the_entry_evicted_anyway_and_the_cached_user_unchanged() {
+
+        //Arrange
+        User cached = cachedUser(userService.addUser(newRegistration()).getUserName());
+        String email = cached.getEmail();
+        UpdateUserDetailRequest request = new UpdateUserDetailRequest();
+        request.setEmail(userService.addUser(newRegistration()).getEmail());
+
+        //Act
+        assertThrows(AppException.class, () -> userService.updateUserDetails(cached, request));
+
+        //Assert
+        assertNull(userCache().get(cached.getUserName()));
+        assertEquals(email, cached.getEmail());
+        assertEquals(email, userService.findByUserName(cached.getUserName()).getEmail());
+    }
+
+    @Test
+    public void when_status_is_changed_through_the_user_expect_the_entry_evicted_and_the_cached_user_unchanged() {
+
+        //Arrange
+        User cached = cachedUser(userService.addUser(newRegistration()).getUserName());
+
+        //Act
+        userService.updateStatusAndSave(cached, AccountStatus.REJECTED);
+
+        //Assert
+        assertNull(userCache().get(cached.getUserName()));
+        assertEquals(AccountStatus.APPROVED, cached.getStatus());
+        assertEquals(AccountStatus.REJECTED, userService.findByUserName(cached.getUserName()).getStatus());
+    }
+
+    @Test
+    public void when_status_is_changed_through_the_id_expect_the_entry_evicted_and_the_cached_user_unchanged() {
+
+        //Arrange
+        User cached = cachedUser(userService.addTester(newRegistration()).getUserName());
+
+        //Act
+        userService.updateApprovalStatus(cached.getId(), AccountStatus.APPROVED);
+
+        //Assert
+        assertNull(userCache().get(cached.getUserName()));
+        assertEquals(AccountStatus.INITIATED, cached.getStatus());
+        assertEquals(AccountStatus.APPROVED, userService.findByUserName(cached.getUserName()).getStatus());
+    }
+
+    @Test
+    public void when_the_password_is_changed_expect_the_entry_evicted_and_the_cached_user_unchanged() {
+
+        //Arrange
+        User cached = cachedUser(userService.addUser(newRegistration()).getUserName());
+        String password = cached.getPassword();
+        ChangePasswordRequest request = new ChangePasswordRequest();
+        request.setOldPassword("password");
+        request.setPassword("newpassword");
+
+        //Act
+        changePasswordService.changePassword(cached, request);
+
+        //Assert
+        assertNull(userCache().get(cached.getUserName()));
+        assertEquals(password, cached.getPassword());
+        assertNotEquals(password, userService.findByUserName(cached.getUserName()).getPassword());
+    }
+
+    // Looked up twice, so the instance returned is the one the cache holds
+    private User cachedUser(String userName) {
+
+        User user = userService.findByUserName(userName);
+        assertSame(user, userService.findByUserName(userName));
+        assertSame(user, userCache().get(userName).get());
+        return user;
+    }
+
+    private Cache userCache() {
+        return cacheManager.getCache("user");
+    }
+
+    private static RegisterRequest newRegistration() {
+        return createRegisterRequestWith("cacheuser" + sequence.incrementAndGet() + System.nanoTime() % 100000, 560003);
+    }
+}